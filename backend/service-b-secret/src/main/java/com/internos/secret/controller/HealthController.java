@@ -1,17 +1,18 @@
 package com.internos.secret.controller;
 
-import com.google.cloud.storage.Storage;
+import com.internos.secret.service.DependencyHealthService;
+import com.internos.secret.service.DependencyHealthService.ProbeResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -20,12 +21,7 @@ import java.util.Map;
 @Slf4j
 public class HealthController {
 
-    private final JdbcTemplate jdbcTemplate;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final Storage storage;
-    
-    @Value("${app.storage.bucket}")
-    private String bucketName;
+    private final DependencyHealthService dependencyHealthService;
 
     @GetMapping("/liveness")
     public ResponseEntity<Map<String, String>> liveness() {
@@ -34,62 +30,44 @@ public class HealthController {
         return ResponseEntity.ok(response);
     }
 
+    // Served from the last background probe run; never touches a dependency itself
     @GetMapping("/readiness")
     public ResponseEntity<Map<String, Object>> readiness() {
-        Map<String, Object> response = new HashMap<>();
+        Map<String, Object> response = new LinkedHashMap<>();
+        Map<String, Object> checks = new LinkedHashMap<>();
         boolean allHealthy = true;
+        Instant now = Instant.now();
 
-        // Check database
-        boolean dbHealthy = checkDatabase();
-        response.put("database", dbHealthy ? "UP" : "DOWN");
+        for (Map.Entry<String, ProbeResult> entry : dependencyHealthService.latest().entrySet()) {
+            ProbeResult result = entry.getValue();
+            boolean fresh = dependencyHealthService.isFresh(result, now);
+            boolean healthy = fresh && result.isUp();
+            allHealthy &= healthy;
 
-        // Check Redis
-        boolean redisHealthy = checkRedis();
-        response.put("redis", redisHealthy ? "UP" : "DOWN");
+            String status = result == null ? "UNKNOWN" : (healthy ? "UP" : "DOWN");
+            response.put(entry.getKey(), status);
 
-        // Check GCS
-        boolean gcsHealthy = checkGcs();
-        response.put("gcs", gcsHealthy ? "UP" : "DOWN");
+            Map<String, Object> check = new LinkedHashMap<>();
+            check.put("status", status);
+            if (result != null) {
+                check.put("latencyMs", result.getLatencyMs());
+                check.put("checkedAt", result.getCheckedAt().toString());
+                check.put("ageMs", Duration.between(result.getCheckedAt(), now).toMillis());
+                check.put("stale", !fresh);
+                if (result.getError() != null) {
+                    check.put("error", result.getError());
+                }
+            }
+            checks.put(entry.getKey(), check);
+        }
+        response.put("checks", checks);
 
-        if (dbHealthy && redisHealthy && gcsHealthy) {
+        if (allHealthy) {
             response.put("status", "READY");
             return ResponseEntity.ok(response);
         } else {
-            allHealthy = false;
             response.put("status", "NOT_READY");
             return ResponseEntity.status(503).body(response);
         }
     }
-
-    private boolean checkDatabase() {
-        try {
-            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
-            return true;
-        } catch (Exception e) {
-            log.error("Database health check failed", e);
-            return false;
-        }
-    }
-
-    private boolean checkRedis() {
-        try {
-            redisTemplate.opsForValue().set("health:check", "ok", java.time.Duration.ofSeconds(1));
-            return Boolean.TRUE.equals(redisTemplate.hasKey("health:check"));
-        } catch (Exception e) {
-            log.error("Redis health check failed", e);
-            return false;
-        }
-    }
-
-    private boolean checkGcs() {
-        try {
-            // Simple check - try to list blobs in bucket (with very small page size)
-            storage.list(bucketName, Storage.BlobListOption.pageSize(1));
-            return true;
-        } catch (Exception e) {
-            log.error("GCS health check failed", e);
-            return false;
-        }
-    }
 }
-
@@ -1,16 +1,18 @@
 package com.internos.secret.controller;
 
 import com.internos.secret.dto.TrendList;
-import com.internos.secret.repository.AttemptRepository;
-import com.internos.secret.repository.SecretRoomRepository;
-import com.internos.secret.entity.SecretRoom;
+import com.internos.secret.service.ContentVersionService;
+import com.internos.secret.service.RankingSnapshotService;
+import com.internos.secret.service.RoomActivityCounters;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.Instant;
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -19,44 +21,61 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RankController {
 
-    private final SecretRoomRepository roomRepository;
-    private final AttemptRepository attemptRepository;
+    private final RankingSnapshotService rankingSnapshotService;
+    private final RoomActivityCounters roomActivityCounters;
+    private final ContentVersionService contentVersionService;
+
+    @Value("${app.http-cache.feed-max-age-sec}")
+    private int feedMaxAgeSec;
+
+    @Value("${app.http-cache.feed-stale-while-revalidate-sec}")
+    private int feedStaleWhileRevalidateSec;
 
     @GetMapping("/trending")
-    public ResponseEntity<TrendList> getTrending(@RequestParam(required = false, defaultValue = "50") Integer limit) {
-        // Get active public rooms
-        Pageable pageable = PageRequest.of(0, Math.min(limit, 100));
-        List<SecretRoom> rooms = roomRepository.findPublicRoomsOrderByNew(pageable);
-
-        Instant oneHourAgo = Instant.now().minusSeconds(3600);
-
-        List<TrendList.TrendItem> items = rooms.stream()
-                .map(room -> {
-                    Long attempts1h = attemptRepository.countByRoomIdSince(room.getId(), oneHourAgo);
-                    Long correct1h = attemptRepository.countCorrectByRoomIdSince(room.getId(), oneHourAgo);
-                    Double solveRate1h = attempts1h > 0 
-                        ? (correct1h.doubleValue() / attempts1h.doubleValue()) 
+    public ResponseEntity<TrendList> getTrending(@RequestParam(required = false, defaultValue = "50") Integer limit,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = contentVersionService.feedEtag("trending", limit);
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(feedMaxAgeSec))
+                .cachePublic()
+                .staleWhileRevalidate(Duration.ofSeconds(feedStaleWhileRevalidateSec));
+
+        // Answered before any repository or aggregation work
+        if (contentVersionService.isNotModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        // Served from the precomputed snapshot; 1h stats come from the in-memory counters
+        int pageSize = Math.min(limit, 100);
+        RankingSnapshotService.Snapshot snapshot = rankingSnapshotService.current();
+
+        List<TrendList.TrendItem> items = rankingSnapshotService.page(snapshot, RankingSnapshotService.Kind.TRENDING, null, pageSize)
+                .getEntries().stream()
+                .map(entry -> {
+                    long counts = roomActivityCounters.windowCounts(entry.getRoom().getId());
+                    int attempts1h = RoomActivityCounters.attempts(counts);
+                    int correct1h = RoomActivityCounters.correct(counts);
+                    Double solveRate1h = attempts1h > 0
+                        ? ((double) correct1h / attempts1h)
                         : 0.0;
-                    
-                    // Trending score: attempts * solve rate
-                    Double trendScore = attempts1h * solveRate1h;
 
                     return TrendList.TrendItem.builder()
-                            .roomId(room.getId())
-                            .trendScore(trendScore)
-                            .attempts1h(attempts1h.intValue())
+                            .roomId(entry.getRoom().getId())
+                            .trendScore(entry.getScore())
+                            .attempts1h(attempts1h)
                             .solveRate1h(solveRate1h)
                             .build();
                 })
-                .sorted((a, b) -> Double.compare(b.getTrendScore(), a.getTrendScore())) // Descending
-                .limit(limit)
                 .collect(Collectors.toList());
 
         TrendList response = TrendList.builder()
                 .items(items)
                 .build();
 
-        return ResponseEntity.ok(response);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(cacheControl);
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        return builder.body(response);
     }
 }
 
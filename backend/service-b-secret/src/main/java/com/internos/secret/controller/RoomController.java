@@ -1,19 +1,35 @@
 package com.internos.secret.controller;
 
 import com.internos.secret.dto.*;
+import com.internos.secret.security.AuthenticationContextHolder;
+import com.internos.secret.service.ContentVersionService;
 import com.internos.secret.service.RoomService;
+import com.internos.secret.service.RoomSnapshot;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+
 @RestController
 @RequestMapping("/rooms")
 @RequiredArgsConstructor
 public class RoomController {
 
     private final RoomService roomService;
+    private final ContentVersionService contentVersionService;
+    private final AuthenticationContextHolder authContextHolder;
+
+    @Value("${app.http-cache.feed-max-age-sec}")
+    private int feedMaxAgeSec;
+
+    @Value("${app.http-cache.feed-stale-while-revalidate-sec}")
+    private int feedStaleWhileRevalidateSec;
 
     @PostMapping
     public ResponseEntity<CreateRoomResp> createRoom(@Valid @RequestBody CreateRoomReq req) {
@@ -22,9 +38,21 @@ public class RoomController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<RoomMeta> getRoom(@PathVariable Long id) {
-        RoomMeta meta = roomService.getRoomMeta(id);
-        return ResponseEntity.ok(meta);
+    public ResponseEntity<RoomMeta> getRoom(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Access check first, so a 304 never confirms a room the caller may not see
+        RoomSnapshot room = roomService.findVisibleRoom(id);
+        String etag = contentVersionService.roomEtag(room, roomService.isOwnerView(room));
+
+        // Owners can see private rooms; keep those out of shared caches
+        CacheControl cacheControl = authContextHolder.getContext().isPresent()
+                ? CacheControl.noCache().cachePrivate()
+                : CacheControl.noCache().cachePublic();
+
+        if (contentVersionService.isNotModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(roomService.toRoomMeta(room));
     }
 
     @PatchMapping("/{id}")
@@ -44,9 +72,23 @@ public class RoomController {
     public ResponseEntity<PublicRoomsResp> getPublicRooms(
             @RequestParam(required = false, defaultValue = "trending") String sort,
             @RequestParam(required = false) Integer limit,
-            @RequestParam(required = false) String cursor) {
+            @RequestParam(required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = contentVersionService.feedEtag("public", sort, limit, cursor);
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(feedMaxAgeSec))
+                .cachePublic()
+                .staleWhileRevalidate(Duration.ofSeconds(feedStaleWhileRevalidateSec));
+
+        // Answered before any repository or aggregation work
+        if (contentVersionService.isNotModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
         PublicRoomsResp resp = roomService.getPublicRooms(sort, limit, cursor);
-        return ResponseEntity.ok(resp);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(cacheControl);
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        return builder.body(resp);
     }
 }
-
@@ -1,11 +1,16 @@
 package com.internos.secret.controller;
 
 import com.internos.secret.dto.*;
+import com.internos.secret.service.ContentVersionService;
 import com.internos.secret.service.NonceService;
+import com.internos.secret.service.RoomSnapshot;
 import com.internos.secret.service.SolveService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,22 +19,42 @@ public class SolveController {
 
     private final SolveService solveService;
     private final NonceService nonceService;
+    private final ContentVersionService contentVersionService;
     private final int nonceTtlSec;
 
     public SolveController(SolveService solveService,
                           NonceService nonceService,
+                          ContentVersionService contentVersionService,
                           @Value("${app.solve.nonce-ttl-sec}") int nonceTtlSec) {
         this.solveService = solveService;
         this.nonceService = nonceService;
+        this.contentVersionService = contentVersionService;
         this.nonceTtlSec = nonceTtlSec;
     }
 
     @GetMapping("/s/{id}/meta")
     public ResponseEntity<SolveMeta> getSolveMeta(@PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
                                                   HttpServletRequest request) {
         String clientIp = getClientIp(request);
-        SolveMeta meta = solveService.getSolveMeta(id, clientIp);
-        return ResponseEntity.ok(meta);
+        RoomSnapshot room = solveService.getSolvableRoom(id);
+        Integer remaining = solveService.remainingViews(room);
+
+        // Lockout state is per client and its countdown changes every second: never cache it
+        Integer retryAfterSec = solveService.lockoutRetryAfterSec(id, clientIp);
+        if (retryAfterSec != null) {
+            return ResponseEntity.ok().cacheControl(CacheControl.noStore())
+                    .body(solveService.getSolveMeta(room, remaining, retryAfterSec));
+        }
+
+        // Answered from the cached room and view count, before the body is assembled
+        String etag = contentVersionService.solveMetaEtag(room, remaining);
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (contentVersionService.isNotModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl)
+                .body(solveService.getSolveMeta(room, remaining, null));
     }
 
     @GetMapping("/solve/nonce")
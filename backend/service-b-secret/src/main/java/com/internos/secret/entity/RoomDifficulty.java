@@ -0,0 +1,39 @@
+package com.internos.secret.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Written only by RoomDifficultyService (bulk SQL); read-only from JPA
+@Entity
+@Table(name = "room_difficulty")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RoomDifficulty {
+
+    @Id
+    @Column(name = "room_id")
+    private Long roomId;
+
+    @Column(name = "attempts", nullable = false)
+    private Long attempts;
+
+    @Column(name = "correct", nullable = false)
+    private Long correct;
+
+    @Column(name = "recent_attempts", nullable = false)
+    private Long recentAttempts;
+
+    @Column(name = "recent_correct", nullable = false)
+    private Long recentCorrect;
+
+    @Column(name = "difficulty")
+    private Double difficulty;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
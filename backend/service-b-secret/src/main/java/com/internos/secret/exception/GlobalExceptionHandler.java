@@ -33,6 +33,15 @@ public class GlobalExceptionHandler {
                 .body(error);
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleServiceUnavailable(ServiceUnavailableException e) {
+        log.warn("Service unavailable exception: {}", e.getMessage());
+        ErrorResponse error = ErrorResponse.of("SERVICE_UNAVAILABLE", e.getMessage(), Map.of("retryAfterSec", e.getRetryAfterSec()));
+        return ResponseEntity.status(503)
+                .header("Retry-After", String.valueOf(e.getRetryAfterSec()))
+                .body(error);
+    }
+
     @ExceptionHandler(GoneException.class)
     public ResponseEntity<ErrorResponse> handleGone(GoneException e) {
         log.warn("Gone exception: {}", e.getMessage());
@@ -0,0 +1,14 @@
+package com.internos.secret.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    private final int retryAfterSec;
+
+    public ServiceUnavailableException(String message, int retryAfterSec) {
+        super(message);
+        this.retryAfterSec = retryAfterSec;
+    }
+
+    public int getRetryAfterSec() {
+        return retryAfterSec;
+    }
+}
@@ -12,17 +12,26 @@ import java.util.List;
 @Repository
 public interface AttemptRepository extends JpaRepository<Attempt, Long> {
 
-    @Query("SELECT COUNT(a) FROM Attempt a WHERE a.roomId = :roomId AND a.createdAt >= :since")
-    Long countByRoomIdSince(@Param("roomId") Long roomId, @Param("since") Instant since);
-
-    @Query("SELECT COUNT(a) FROM Attempt a WHERE a.roomId = :roomId AND a.isCorrect = true AND a.createdAt >= :since")
-    Long countCorrectByRoomIdSince(@Param("roomId") Long roomId, @Param("since") Instant since);
-
     @Query("SELECT a FROM Attempt a WHERE a.roomId = :roomId ORDER BY a.createdAt DESC")
     List<Attempt> findByRoomId(@Param("roomId") Long roomId);
 
-    @Query("SELECT COUNT(a) FROM Attempt a WHERE a.roomId = :roomId AND a.ipHash = :ipHash " +
-           "AND a.isCorrect = false AND a.createdAt >= :since")
-    Long countFailedAttemptsSince(@Param("roomId") Long roomId, @Param("ipHash") String ipHash, @Param("since") Instant since);
+    // Decayed attempt weight per public active room as of asOf (seeds the trending leaderboard)
+    @Query(value = "SELECT s.room_id AS \"roomId\", " +
+                   "CAST(SUM((s.correct * :correctWeight + (s.attempts - s.correct) * :attemptWeight) " +
+                   "* POWER(2.0, CAST(EXTRACT(EPOCH FROM (s.bucket - CAST(:asOf AS timestamptz))) AS double precision) / :halfLifeSec)) " +
+                   "AS double precision) AS \"score\" " +
+                   "FROM attempt_stats_minute_live s JOIN secret_room sr ON sr.id = s.room_id " +
+                   "WHERE s.bucket >= date_trunc('minute', CAST(:since AS timestamptz)) " +
+                   "AND sr.visibility = 'PUBLIC' AND sr.is_active " +
+                   "GROUP BY s.room_id",
+           nativeQuery = true)
+    List<RoomScore> findDecayedScoresSince(@Param("since") Instant since, @Param("asOf") Instant asOf,
+                                           @Param("halfLifeSec") double halfLifeSec,
+                                           @Param("correctWeight") double correctWeight,
+                                           @Param("attemptWeight") double attemptWeight);
+
+    interface RoomScore {
+        Long getRoomId();
+        Double getScore();
+    }
 }
-
@@ -10,19 +10,15 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.Optional;
 
 @Repository
 public interface LockoutRepository extends JpaRepository<Lockout, LockoutId> {
 
-    Optional<Lockout> findByRoomIdAndIpHash(Long roomId, String ipHash);
-
+    // Bounded delete so each purge step only holds row locks for one small chunk
     @Modifying
     @Transactional
-    @Query("DELETE FROM Lockout l WHERE l.until < :now")
-    void deleteExpiredLockouts(@Param("now") Instant now);
-
-    @Query("SELECT l FROM Lockout l WHERE l.roomId = :roomId AND l.ipHash = :ipHash AND l.until > :now")
-    Optional<Lockout> findActiveLockout(@Param("roomId") Long roomId, @Param("ipHash") String ipHash, @Param("now") Instant now);
+    @Query(value = "DELETE FROM lockout WHERE ctid IN " +
+                   "(SELECT ctid FROM lockout WHERE until < :now LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredChunk(@Param("now") Instant now, @Param("limit") int limit);
 }
 
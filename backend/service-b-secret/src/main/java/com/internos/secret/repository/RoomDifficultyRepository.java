@@ -0,0 +1,37 @@
+package com.internos.secret.repository;
+
+import com.internos.secret.entity.RoomDifficulty;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RoomDifficultyRepository extends JpaRepository<RoomDifficulty, Long> {
+
+    // Hardest listable public rooms first, over idx_room_difficulty_rank; ties break by the lower id.
+    // Ordered by the indexed expression so the keyset below is a single row comparison
+    @Query(value = "SELECT rd.room_id AS \"roomId\", rd.difficulty AS \"difficulty\" " +
+                   "FROM room_difficulty rd JOIN secret_room sr ON sr.id = rd.room_id " +
+                   "WHERE rd.difficulty IS NOT NULL " +
+                   "AND sr.visibility = 'PUBLIC' AND sr.is_active AND (sr.expires_at IS NULL OR sr.expires_at > NOW()) " +
+                   "ORDER BY -rd.difficulty, rd.room_id LIMIT :limit",
+           nativeQuery = true)
+    List<RankedRoom> findHardestFirstPage(@Param("limit") int limit);
+
+    @Query(value = "SELECT rd.room_id AS \"roomId\", rd.difficulty AS \"difficulty\" " +
+                   "FROM room_difficulty rd JOIN secret_room sr ON sr.id = rd.room_id " +
+                   "WHERE rd.difficulty IS NOT NULL " +
+                   "AND (-rd.difficulty, rd.room_id) > (-CAST(:difficulty AS double precision), :roomId) " +
+                   "AND sr.visibility = 'PUBLIC' AND sr.is_active AND (sr.expires_at IS NULL OR sr.expires_at > NOW()) " +
+                   "ORDER BY -rd.difficulty, rd.room_id LIMIT :limit",
+           nativeQuery = true)
+    List<RankedRoom> findHardestAfter(@Param("difficulty") double difficulty, @Param("roomId") Long roomId, @Param("limit") int limit);
+
+    interface RankedRoom {
+        Long getRoomId();
+        Double getDifficulty();
+    }
+}
@@ -1,11 +1,12 @@
 package com.internos.secret.repository;
 
 import com.internos.secret.entity.SecretRoom;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
@@ -14,20 +15,57 @@ import java.util.Optional;
 @Repository
 public interface SecretRoomRepository extends JpaRepository<SecretRoom, Long> {
 
-    @Query("SELECT sr FROM SecretRoom sr WHERE sr.id = :id AND sr.visibility = 'PUBLIC' AND sr.isActive = true")
-    Optional<SecretRoom> findPublicById(@Param("id") Long id);
+    // Newest-first keyset over idx_secret_room_public_card, selecting only card columns so Postgres can
+    // answer from the index; first and next pages are separate statements so each is a plain range scan
+    @Query(value = "SELECT id AS \"id\", owner_name AS \"ownerName\", title AS \"title\", hint AS \"hint\", " +
+                   "CAST(content_type AS text) AS \"contentType\", created_at AS \"createdAt\" " +
+                   "FROM secret_room WHERE visibility = 'PUBLIC' AND is_active " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<PublicCardRow> findPublicCardsFirstPage(@Param("limit") int limit);
 
-    @Query("SELECT sr FROM SecretRoom sr WHERE sr.id = :id AND (sr.visibility = 'PUBLIC' OR sr.ownerId = :ownerId)")
-    Optional<SecretRoom> findByIdForOwner(@Param("id") Long id, @Param("ownerId") Long ownerId);
-
-    @Query("SELECT sr FROM SecretRoom sr WHERE sr.visibility = 'PUBLIC' AND sr.isActive = true ORDER BY sr.createdAt DESC")
-    List<SecretRoom> findPublicRoomsOrderByNew(Pageable pageable);
+    @Query(value = "SELECT id AS \"id\", owner_name AS \"ownerName\", title AS \"title\", hint AS \"hint\", " +
+                   "CAST(content_type AS text) AS \"contentType\", created_at AS \"createdAt\" " +
+                   "FROM secret_room WHERE visibility = 'PUBLIC' AND is_active " +
+                   "AND (created_at, id) < (:createdAt, :id) " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<PublicCardRow> findPublicCardsAfter(@Param("createdAt") Instant createdAt, @Param("id") Long id, @Param("limit") int limit);
 
     @Query("SELECT sr FROM SecretRoom sr WHERE sr.ownerId = :ownerId ORDER BY sr.createdAt DESC")
     List<SecretRoom> findByOwnerId(@Param("ownerId") Long ownerId);
 
-    @Query("SELECT sr FROM SecretRoom sr WHERE sr.visibility = 'PUBLIC' AND sr.isActive = true " +
-           "AND (:cursor IS NULL OR sr.createdAt < :cursor) ORDER BY sr.createdAt DESC")
-    List<SecretRoom> findPublicRoomsWithCursor(@Param("cursor") Instant cursor, Pageable pageable);
+    @Query("SELECT sr.viewsUsed FROM SecretRoom sr WHERE sr.id = :id")
+    Optional<Integer> findViewsUsedById(@Param("id") Long id);
+
+    // Consumes one view in a single conditional statement; no row means the room was already used up
+    @Transactional
+    @Query(value = "UPDATE secret_room SET views_used = views_used + 1, " +
+                   "is_active = (policy <> 'ONCE' AND (view_limit IS NULL OR views_used + 1 < view_limit)) " +
+                   "WHERE id = :id AND is_active AND (view_limit IS NULL OR views_used < view_limit) " +
+                   "AND (expires_at IS NULL OR expires_at > NOW()) " +
+                   "RETURNING views_used AS \"viewsUsed\", view_limit AS \"viewLimit\", is_active AS \"isActive\"",
+           nativeQuery = true)
+    Optional<ViewConsumption> consumeView(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SecretRoom sr SET sr.isActive = false WHERE sr.id = :id AND sr.isActive = true")
+    int deactivate(@Param("id") Long id);
+
+    interface PublicCardRow {
+        Long getId();
+        String getOwnerName();
+        String getTitle();
+        String getHint();
+        SecretRoom.ContentType getContentType();
+        Instant getCreatedAt();
+    }
+
+    interface ViewConsumption {
+        Integer getViewsUsed();
+        Integer getViewLimit();
+        Boolean getIsActive();
+    }
 }
 
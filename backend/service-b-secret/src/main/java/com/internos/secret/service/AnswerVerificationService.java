@@ -0,0 +1,171 @@
+package com.internos.secret.service;
+
+import com.internos.secret.exception.RateLimitedException;
+import com.internos.secret.exception.ServiceUnavailableException;
+import com.internos.secret.util.PasswordUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+@Slf4j
+public class AnswerVerificationService {
+
+    private final PasswordUtil passwordUtil;
+    private final ThreadPoolExecutor executor;
+    // One permit per worker or queue slot; held from reserve() until a worker is done with the task
+    private final Semaphore capacity;
+    private final long timeoutMs;
+    private final int retryAfterSec;
+    private final Timer waitTimer;
+    private final Timer verifyTimer;
+    private final Counter rejectedCounter;
+
+    public AnswerVerificationService(PasswordUtil passwordUtil,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.solve.verify.pool-size}") int poolSize,
+                                     @Value("${app.solve.verify.queue-capacity}") int queueCapacity,
+                                     @Value("${app.solve.verify.timeout-ms}") long timeoutMs,
+                                     @Value("${app.solve.verify.retry-after-sec}") int retryAfterSec) {
+        this.passwordUtil = passwordUtil;
+        this.timeoutMs = timeoutMs;
+        this.retryAfterSec = retryAfterSec;
+
+        // Default to one thread per core: BCrypt is pure CPU, more threads only add contention
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("solve-verify-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.capacity = new Semaphore(threads + queueCapacity);
+
+        Gauge.builder("solve.verify.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("solve.verify.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("solve.verify.wait")
+                .description("Time a verification spent queued before a worker picked it up")
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("solve.verify.duration")
+                .description("Time spent inside BCrypt matching")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("solve.verify.rejected")
+                .description("Solves rejected because every verification slot was taken")
+                .register(meterRegistry);
+
+        log.info("Answer verification pool started with {} threads, queue capacity {}", threads, queueCapacity);
+    }
+
+    // Claims a worker or queue slot up front, so a saturated pool is reported before the caller spends its nonce
+    public Reservation reserve() {
+        if (!capacity.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new RateLimitedException("Too many answers are being verified. Please try again shortly.", retryAfterSec);
+        }
+        return new Reservation(capacity);
+    }
+
+    // Blocks the calling thread until the answer is checked or the timeout passes
+    public boolean verify(Reservation reservation, String answer, String answerHash) {
+        if (!reservation.handOver()) {
+            throw new IllegalStateException("Verification reservation already used");
+        }
+        long enqueuedAt = System.nanoTime();
+        FutureTask<Boolean> future = new FutureTask<>(() -> {
+            waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            return verifyTimer.recordCallable(() -> passwordUtil.matches(answer, answerHash));
+        });
+
+        try {
+            executor.execute(() -> {
+                try {
+                    // No-op when the caller gave up while the task was still queued
+                    future.run();
+                } finally {
+                    reservation.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only while shutting down: the slot was reserved
+            reservation.release();
+            throw new ServiceUnavailableException("Answer verification is shutting down", retryAfterSec);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ServiceUnavailableException("Answer verification timed out", retryAfterSec);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new ServiceUnavailableException("Answer verification was interrupted", retryAfterSec);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Answer verification failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    // A verification slot; close() gives it back unless verify() handed it to a worker
+    public static class Reservation implements AutoCloseable {
+        private final Semaphore capacity;
+        private final AtomicBoolean handedOver = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(Semaphore capacity) {
+            this.capacity = capacity;
+        }
+
+        private boolean handOver() {
+            return handedOver.compareAndSet(false, true);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                capacity.release();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!handedOver.get()) {
+                release();
+            }
+        }
+    }
+}
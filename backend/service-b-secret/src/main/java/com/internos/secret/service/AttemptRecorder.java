@@ -0,0 +1,185 @@
+package com.internos.secret.service;
+
+import com.internos.secret.entity.Attempt;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class AttemptRecorder {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO attempt (room_id, solver_anon_id, is_correct, latency_ms, ip_hash, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int MAX_WRITE_TRIES = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<Attempt> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter callerRuns;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public AttemptRecorder(JdbcTemplate jdbcTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.attempt.write-behind.queue-capacity}") int queueCapacity,
+                           @Value("${app.attempt.write-behind.batch-size}") int batchSize,
+                           @Value("${app.attempt.write-behind.flush-interval-ms}") long flushIntervalMs,
+                           @Value("${app.attempt.write-behind.offer-timeout-ms}") long offerTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+
+        Gauge.builder("attempt.write_behind.queue.depth", queue, BlockingQueue::size)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("attempt.write_behind.flush")
+                .description("Time spent writing one batch of attempts")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("attempt.write_behind.batch.size")
+                .register(meterRegistry);
+        this.callerRuns = Counter.builder("attempt.write_behind.caller_runs")
+                .description("Attempts written on the request thread because the queue was full")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("attempt.write_behind.dropped")
+                .description("Attempts lost after repeated write failures")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlusher, "attempt-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public void record(Attempt attempt) {
+        if (attempt.getCreatedAt() == null) {
+            attempt.setCreatedAt(Instant.now());
+        }
+        try {
+            if (running && queue.offer(attempt, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Queue full (or shutting down): write on the caller thread, which naturally slows producers down
+        callerRuns.increment();
+        write(List.of(attempt));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything the flusher could not get to before the deadline
+        List<Attempt> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+    }
+
+    private void runFlusher() {
+        List<Attempt> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Attempt first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Flush when the batch is full or the oldest attempt has waited flushIntervalMs
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0 || !running) {
+                        break;
+                    }
+                    Attempt next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write(batch);
+                return;
+            } catch (Exception e) {
+                log.error("Attempt writer loop failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Attempt> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int tryNo = 1; tryNo <= MAX_WRITE_TRIES; tryNo++) {
+            try {
+                flushTimer.record(() -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, attempt) -> {
+                    ps.setLong(1, attempt.getRoomId());
+                    ps.setString(2, attempt.getSolverAnonId());
+                    ps.setBoolean(3, attempt.getIsCorrect());
+                    if (attempt.getLatencyMs() != null) {
+                        ps.setInt(4, attempt.getLatencyMs());
+                    } else {
+                        ps.setNull(4, Types.INTEGER);
+                    }
+                    ps.setString(5, attempt.getIpHash());
+                    ps.setTimestamp(6, Timestamp.from(attempt.getCreatedAt()));
+                }));
+                batchSizes.record(batch.size());
+                return;
+            } catch (DataAccessException e) {
+                log.warn("Failed to write {} attempts (try {}/{})", batch.size(), tryNo, MAX_WRITE_TRIES, e);
+                try {
+                    Thread.sleep(200L * tryNo);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        dropped.increment(batch.size());
+        log.error("Dropped {} attempts after {} failed writes", batch.size(), MAX_WRITE_TRIES);
+    }
+}
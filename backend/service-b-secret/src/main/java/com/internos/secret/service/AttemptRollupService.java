@@ -0,0 +1,121 @@
+package com.internos.secret.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Folds raw attempt rows into attempt_stats_minute and advances the watermark in the same transaction.
+// Minutes are recomputed from scratch on every pass, so re-running a range never double counts.
+@Service
+@Slf4j
+public class AttemptRollupService {
+
+    private static final String JOB_NAME = "attempt_minute";
+
+    // SKIP LOCKED: when another node is mid-run this one simply skips the tick
+    private static final String LOCK_SQL =
+            "SELECT watermark FROM stats_rollup_state WHERE name = ? FOR UPDATE SKIP LOCKED";
+    private static final String EARLIEST_SQL =
+            "SELECT date_trunc('minute', MIN(created_at)) FROM attempt";
+    private static final String UPSERT_SQL =
+            "INSERT INTO attempt_stats_minute (room_id, bucket, attempts, correct, latency_sum) " +
+            "SELECT room_id, date_trunc('minute', created_at), COUNT(*), COUNT(*) FILTER (WHERE is_correct), " +
+            "COALESCE(SUM(latency_ms), 0) " +
+            "FROM attempt WHERE created_at >= ? AND created_at < ? " +
+            "GROUP BY room_id, date_trunc('minute', created_at) " +
+            "ON CONFLICT (room_id, bucket) DO UPDATE SET attempts = EXCLUDED.attempts, " +
+            "correct = EXCLUDED.correct, latency_sum = EXCLUDED.latency_sum";
+    private static final String ADVANCE_SQL =
+            "UPDATE stats_rollup_state SET watermark = ? WHERE name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RoomDifficultyService roomDifficultyService;
+    private final Duration lag;
+    private final Duration recheck;
+    private final Duration maxRange;
+    private final Timer runTimer;
+    private final Counter rowsUpserted;
+    private final AtomicReference<Instant> lastWatermark = new AtomicReference<>();
+
+    public AttemptRollupService(JdbcTemplate jdbcTemplate,
+                                RoomDifficultyService roomDifficultyService,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.stats.rollup.lag-sec}") long lagSec,
+                                @Value("${app.stats.rollup.recheck-minutes}") long recheckMinutes,
+                                @Value("${app.stats.rollup.max-range-minutes}") long maxRangeMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.roomDifficultyService = roomDifficultyService;
+        this.lag = Duration.ofSeconds(lagSec);
+        this.recheck = Duration.ofMinutes(recheckMinutes);
+        this.maxRange = Duration.ofMinutes(Math.max(1, maxRangeMinutes));
+
+        this.runTimer = Timer.builder("stats.rollup.run")
+                .description("Time spent folding one range of attempts into the minute rollup")
+                .register(meterRegistry);
+        this.rowsUpserted = Counter.builder("stats.rollup.rows")
+                .description("Room-minute rows written to attempt_stats_minute")
+                .register(meterRegistry);
+        Gauge.builder("stats.rollup.lag.seconds", this, AttemptRollupService::watermarkLagSeconds)
+                .description("How far the rollup watermark trails the wall clock")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.stats.rollup.interval-ms}",
+               fixedDelayString = "${app.stats.rollup.interval-ms}")
+    @Transactional
+    public void rollup() {
+        List<Timestamp> locked = jdbcTemplate.queryForList(LOCK_SQL, Timestamp.class, JOB_NAME);
+        if (locked.isEmpty()) {
+            return;
+        }
+
+        // Rows younger than the lag may still be buffered by the attempt recorder on some node
+        Instant upTo = Instant.now().minus(lag).truncatedTo(ChronoUnit.MINUTES);
+        Instant watermark = locked.get(0) != null ? locked.get(0).toInstant() : null;
+        Instant from;
+        if (watermark == null) {
+            Timestamp earliest = jdbcTemplate.queryForObject(EARLIEST_SQL, Timestamp.class);
+            from = earliest != null ? earliest.toInstant() : upTo;
+            watermark = from;
+        } else {
+            // Re-aggregate the last few closed minutes to pick up late flushes
+            from = watermark.minus(recheck);
+        }
+        // Backfill and catch-up proceed in bounded steps so one run never holds the lock for long
+        Instant to = watermark.plus(maxRange).isBefore(upTo) ? watermark.plus(maxRange) : upTo;
+        if (!to.isAfter(watermark)) {
+            lastWatermark.set(watermark);
+            return;
+        }
+
+        long started = System.nanoTime();
+        // Same transaction: difficulty never runs ahead of or behind the rollup it was computed from
+        roomDifficultyService.retract(from, to, watermark);
+        int rows = jdbcTemplate.update(UPSERT_SQL, Timestamp.from(from), Timestamp.from(to));
+        roomDifficultyService.refresh(from, to, watermark);
+        jdbcTemplate.update(ADVANCE_SQL, Timestamp.from(to), JOB_NAME);
+        runTimer.record(Duration.ofNanos(System.nanoTime() - started));
+        rowsUpserted.increment(rows);
+        lastWatermark.set(to);
+        log.debug("Rolled up attempts [{}, {}) into {} room-minute rows", from, to, rows);
+    }
+
+    private double watermarkLagSeconds() {
+        Instant watermark = lastWatermark.get();
+        return watermark == null ? Double.NaN : Duration.between(watermark, Instant.now()).getSeconds();
+    }
+}
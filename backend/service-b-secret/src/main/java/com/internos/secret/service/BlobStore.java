@@ -0,0 +1,13 @@
+package com.internos.secret.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface BlobStore {
+
+    // Streams the object; the caller closes the stream. FileNotFoundException when the ref does not exist
+    InputStream openRead(String ref) throws IOException;
+
+    // Creates or replaces the object, so repeated writes of the same ref are harmless
+    void write(String ref, byte[] data, String contentType) throws IOException;
+}
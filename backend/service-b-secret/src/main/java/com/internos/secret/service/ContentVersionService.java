@@ -0,0 +1,126 @@
+package com.internos.secret.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+@Service
+@Slf4j
+public class ContentVersionService {
+
+    private static final String FEED_VERSION_KEY = "version:feed";
+    private static final String FEED_STATS_VERSION_KEY = "version:feed-stats";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int signedUrlMinRemainingSec;
+
+    public ContentVersionService(StringRedisTemplate stringRedisTemplate,
+                                 @Value("${app.storage.signed-url-min-remaining-sec}") int signedUrlMinRemainingSec) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.signedUrlMinRemainingSec = Math.max(1, signedUrlMinRemainingSec);
+    }
+
+    // A room was created, edited, deleted or dropped out of the feeds; shared by all nodes through Redis
+    public void bumpFeed() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(FEED_VERSION_KEY);
+                }
+            });
+        } else {
+            increment(FEED_VERSION_KEY);
+        }
+    }
+
+    // The 1h stats or trending scores shown in the feeds moved; called at most once per publish tick per node
+    public void bumpFeedStats() {
+        increment(FEED_STATS_VERSION_KEY);
+    }
+
+    // Feeds change with room edits and with the stats shown on them; null disables conditional GET
+    public String feedEtag(Object... parts) {
+        List<String> versions;
+        try {
+            versions = stringRedisTemplate.opsForValue().multiGet(List.of(FEED_VERSION_KEY, FEED_STATS_VERSION_KEY));
+        } catch (Exception e) {
+            log.warn("Failed to read feed version", e);
+            return null;
+        }
+        if (versions == null) {
+            return null;
+        }
+        return etag("feed", Objects.requireNonNullElse(versions.get(0), "0"),
+                Objects.requireNonNullElse(versions.get(1), "0"), etag(parts));
+    }
+
+    // ownerView: whether the body carries the owner-only thumbnail
+    public String roomEtag(RoomSnapshot room, boolean ownerView) {
+        Instant now = Instant.now();
+        // Served thumbnail URLs are valid for at least the min-remaining window; a reused body must not outlive it
+        Object urlEpoch = ownerView && room.getImageMeta() != null && room.getImageMeta().get("thumb_ref") != null
+                ? now.getEpochSecond() / signedUrlMinRemainingSec
+                : "-";
+        return etag("room", room.getId(), room.getUpdatedAt(), room.getViewsUsed(),
+                room.getIsActive(), room.isExpired(now), ownerView, urlEpoch);
+    }
+
+    // Every editable field moves updatedAt; remaining is the only part that changes without an edit
+    public String solveMetaEtag(RoomSnapshot room, Integer remaining) {
+        return etag("meta", room.getId(), room.getUpdatedAt(), remaining);
+    }
+
+    // Weak comparison (RFC 9110 8.8.3.2), as required for If-None-Match
+    public boolean isNotModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag) || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private void increment(String versionKey) {
+        try {
+            stringRedisTemplate.opsForValue().increment(versionKey);
+        } catch (Exception e) {
+            // Clients keep revalidating against the old version until the next successful bump
+            log.warn("Failed to bump {}", versionKey, e);
+        }
+    }
+
+    private String etag(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            byte[] hash = digest.digest();
+            return "W/\"" + HexFormat.of().formatHex(hash, 0, 12) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
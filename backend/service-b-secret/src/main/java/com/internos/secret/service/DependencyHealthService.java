@@ -0,0 +1,164 @@
+package com.internos.secret.service;
+
+import com.google.cloud.storage.Storage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+@Slf4j
+public class DependencyHealthService {
+
+    private final Map<String, Probe> probes = new LinkedHashMap<>();
+    private final Map<String, ProbeResult> results = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final long timeoutMs;
+    private final Duration maxStaleness;
+
+    public DependencyHealthService(JdbcTemplate jdbcTemplate,
+                                   StringRedisTemplate stringRedisTemplate,
+                                   Storage storage,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.storage.bucket}") String bucketName,
+                                   @Value("${app.health.probe-timeout-ms}") long timeoutMs,
+                                   @Value("${app.health.max-staleness-ms}") long maxStalenessMs) {
+        this.timeoutMs = timeoutMs;
+        this.maxStaleness = Duration.ofMillis(maxStalenessMs);
+
+        // Read-only checks: nothing here writes to a dependency
+        register("database", meterRegistry, () -> jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+        register("redis", meterRegistry, () -> {
+            String pong = stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+            if (!"PONG".equalsIgnoreCase(pong)) {
+                throw new IllegalStateException("Unexpected PING reply: " + pong);
+            }
+        });
+        // Lists one object: needs only storage.objects.list, not storage.buckets.get
+        register("gcs", meterRegistry, () -> storage.list(bucketName, Storage.BlobListOption.pageSize(1)));
+
+        // One thread per probe: a hung dependency can never delay the others
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("health-probe-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newFixedThreadPool(probes.size(), threadFactory);
+    }
+
+    @Scheduled(fixedDelayString = "${app.health.probe-interval-ms}")
+    public void probeAll() {
+        probes.forEach(this::runProbe);
+    }
+
+    public Map<String, ProbeResult> latest() {
+        Map<String, ProbeResult> snapshot = new LinkedHashMap<>();
+        for (String name : probes.keySet()) {
+            snapshot.put(name, results.get(name));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    public boolean isFresh(ProbeResult result, Instant now) {
+        return result != null && Duration.between(result.getCheckedAt(), now).compareTo(maxStaleness) <= 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void register(String name, MeterRegistry meterRegistry, Runnable check) {
+        Timer timer = Timer.builder("health.probe")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        probes.put(name, new Probe(check, timer));
+    }
+
+    private void runProbe(String name, Probe probe) {
+        if (!probe.running.compareAndSet(false, true)) {
+            // Previous call has not returned yet: that is a failure in its own right
+            results.put(name, new ProbeResult(false, timeoutMs, Instant.now(), "Previous probe still running"));
+            return;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture.runAsync(() -> {
+                    try {
+                        probe.check.run();
+                    } finally {
+                        probe.running.set(false);
+                    }
+                }, executor)
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, error) -> {
+                    long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    probe.timer.record(latencyMs, TimeUnit.MILLISECONDS);
+                    String message = null;
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        message = cause instanceof TimeoutException ? "Timed out after " + timeoutMs + " ms" : cause.toString();
+                        log.warn("Health probe {} failed: {}", name, message);
+                    }
+                    results.put(name, new ProbeResult(error == null, latencyMs, Instant.now(), message));
+                });
+    }
+
+    private static class Probe {
+        private final Runnable check;
+        private final Timer timer;
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private Probe(Runnable check, Timer timer) {
+            this.check = check;
+            this.timer = timer;
+        }
+    }
+
+    public static class ProbeResult {
+        private final boolean up;
+        private final long latencyMs;
+        private final Instant checkedAt;
+        private final String error;
+
+        public ProbeResult(boolean up, long latencyMs, Instant checkedAt, String error) {
+            this.up = up;
+            this.latencyMs = latencyMs;
+            this.checkedAt = checkedAt;
+            this.error = error;
+        }
+
+        public boolean isUp() {
+            return up;
+        }
+
+        public long getLatencyMs() {
+            return latencyMs;
+        }
+
+        public Instant getCheckedAt() {
+            return checkedAt;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.internos.secret.service;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+
+@Component
+@ConditionalOnProperty(name = "app.storage.blob-store", havingValue = "gcs", matchIfMissing = true)
+public class GcsBlobStore implements BlobStore {
+
+    private final Storage storage;
+    private final String bucketName;
+
+    public GcsBlobStore(Storage storage,
+                        @Value("${app.storage.bucket}") String bucketName) {
+        this.storage = storage;
+        this.bucketName = bucketName;
+    }
+
+    @Override
+    public InputStream openRead(String ref) throws IOException {
+        BlobId blobId = BlobId.of(bucketName, ref);
+        try {
+            if (storage.get(blobId, Storage.BlobGetOption.fields(Storage.BlobField.NAME)) == null) {
+                throw new FileNotFoundException(ref);
+            }
+            ReadChannel reader = storage.reader(blobId);
+            return Channels.newInputStream(reader);
+        } catch (StorageException e) {
+            throw new IOException("Failed to open " + ref, e);
+        }
+    }
+
+    @Override
+    public void write(String ref, byte[] data, String contentType) throws IOException {
+        BlobInfo blobInfo = BlobInfo.newBuilder(bucketName, ref)
+                .setContentType(contentType)
+                .build();
+        try {
+            storage.create(blobInfo, data);
+        } catch (StorageException e) {
+            throw new IOException("Failed to write " + ref, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.internos.secret.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+
+// Exponentially decayed hotness kept in log space. An event of weight w at time t is stored as
+// ln(w) + t * ln2 / halfLife ("future timestamp"): later events are simply worth more, so adding one
+// is a single logaddexp and stored scores never need rescoring. Decaying to "now" only happens on read.
+@Component
+public class HotnessScorer {
+
+    private static final double LN2 = Math.log(2);
+
+    private final Clock clock;
+    private final double ratePerSec;
+
+    public HotnessScorer(Clock clock, @Value("${app.trending.half-life-sec}") int halfLifeSec) {
+        if (halfLifeSec <= 0) {
+            throw new IllegalArgumentException("Half-life must be positive");
+        }
+        this.clock = clock;
+        this.ratePerSec = LN2 / halfLifeSec;
+    }
+
+    // Log-space contribution of one event of the given weight happening now
+    public double logWeight(double weight) {
+        return logWeight(weight, clock.instant());
+    }
+
+    public double logWeight(double weight, Instant at) {
+        return Math.log(weight) + epochSeconds(at) * ratePerSec;
+    }
+
+    // Score after adding an event; pass NEGATIVE_INFINITY for a room with no history
+    public double add(double logScore, double logWeight) {
+        return logAddExp(logScore, logWeight);
+    }
+
+    // Decayed score as of now: the sum of w * 2^(-(now - t) / halfLife) over all events
+    public double score(double logScore) {
+        return Math.exp(logScore - epochSeconds(clock.instant()) * ratePerSec);
+    }
+
+    // Log-space value whose decayed score is exactly minScore right now
+    public double logThreshold(double minScore) {
+        return logWeight(minScore);
+    }
+
+    public static double logAddExp(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        if (b == Double.NEGATIVE_INFINITY) {
+            return a;
+        }
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(-Math.abs(a - b)));
+    }
+
+    private static double epochSeconds(Instant instant) {
+        return instant.getEpochSecond() + instant.getNano() / 1_000_000_000.0;
+    }
+}
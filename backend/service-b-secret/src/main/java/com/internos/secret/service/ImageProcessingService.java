@@ -0,0 +1,395 @@
+package com.internos.secret.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class ImageProcessingService {
+
+    private static final String VARIANT_CONTENT_TYPE = "image/jpeg";
+
+    private static final String STATUS_PENDING = "PENDING";
+    private static final String STATUS_FAILED = "FAILED";
+
+    // Not processed yet: no meta at all, or only the retry marker left by failed runs
+    private static final String PENDING_PREDICATE =
+            "(image_meta IS NULL OR image_meta->>'status' = '" + STATUS_PENDING + "')";
+
+    private static final String SELECT_PENDING_SQL =
+            "SELECT id, image_ref FROM secret_room " +
+            "WHERE content_type = 'IMAGE' AND " + PENDING_PREDICATE + " AND created_at < ? " +
+            "ORDER BY id LIMIT ?";
+
+    // Only the first successful run writes; a retry racing a finished run is a no-op
+    private static final String UPDATE_META_SQL =
+            "UPDATE secret_room SET image_meta = CAST(? AS jsonb), updated_at = NOW() " +
+            "WHERE id = ? AND image_ref = ? AND " + PENDING_PREDICATE;
+
+    // Failed runs are counted in the row itself, so restarts and other nodes see the same budget
+    private static final String RECORD_ATTEMPT_SQL =
+            "UPDATE secret_room SET image_meta = jsonb_build_object(" +
+            "'status', '" + STATUS_PENDING + "', " +
+            "'attempts', COALESCE(CAST(image_meta->>'attempts' AS integer), 0) + 1, " +
+            "'reason', CAST(? AS text)) " +
+            "WHERE id = ? AND image_ref = ? AND " + PENDING_PREDICATE + " " +
+            "RETURNING CAST(image_meta->>'attempts' AS integer)";
+
+    private final BlobStore blobStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final RoomCache roomCache;
+    private final ThreadPoolExecutor executor;
+    private final int thumbWidth;
+    private final int[] variantWidths;
+    private final float jpegQuality;
+    private final long maxPixels;
+    private final int maxAttempts;
+    private final int sweepGraceSec;
+    private final int sweepBatchSize;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Timer processTimer;
+    private final Counter failures;
+    private final Counter rejected;
+
+    public ImageProcessingService(BlobStore blobStore,
+                                  JdbcTemplate jdbcTemplate,
+                                  ObjectMapper objectMapper,
+                                  RoomCache roomCache,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.image.pool-size}") int poolSize,
+                                  @Value("${app.image.queue-capacity}") int queueCapacity,
+                                  @Value("${app.image.thumb-width}") int thumbWidth,
+                                  @Value("${app.image.variant-widths}") int[] variantWidths,
+                                  @Value("${app.image.jpeg-quality}") float jpegQuality,
+                                  @Value("${app.image.max-pixels}") long maxPixels,
+                                  @Value("${app.image.max-attempts}") int maxAttempts,
+                                  @Value("${app.image.sweep.grace-sec}") int sweepGraceSec,
+                                  @Value("${app.image.sweep.batch-size}") int sweepBatchSize) {
+        this.blobStore = blobStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.roomCache = roomCache;
+        this.thumbWidth = thumbWidth;
+        // Largest first, so each variant can be scaled down from the previous one
+        this.variantWidths = Arrays.stream(variantWidths).boxed()
+                .sorted((a, b) -> Integer.compare(b, a))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.jpegQuality = jpegQuality;
+        this.maxPixels = maxPixels;
+        this.maxAttempts = maxAttempts;
+        this.sweepGraceSec = sweepGraceSec;
+        this.sweepBatchSize = sweepBatchSize;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("image-proc-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        Gauge.builder("image.process.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        this.processTimer = Timer.builder("image.process.duration")
+                .description("Decode, resize, encode and upload of all variants of one image")
+                .register(meterRegistry);
+        this.failures = Counter.builder("image.process.failures")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("image.process.rejected")
+                .description("Jobs left to the sweep because the queue was full")
+                .register(meterRegistry);
+    }
+
+    // Queues the room once the creating transaction has committed, so workers can see the row
+    public void submitAfterCommit(Long roomId, String imageRef) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(roomId, imageRef);
+                }
+            });
+        } else {
+            submit(roomId, imageRef);
+        }
+    }
+
+    public boolean submit(Long roomId, String imageRef) {
+        if (!inFlight.add(roomId)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> process(roomId, imageRef));
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(roomId);
+            rejected.increment();
+            return false;
+        }
+    }
+
+    // Picks up rooms whose job was rejected, lost on shutdown or failed transiently
+    @Scheduled(fixedDelayString = "${app.image.sweep.interval-ms}")
+    public void sweep() {
+        try {
+            Timestamp createdBefore = Timestamp.from(Instant.now().minusSeconds(sweepGraceSec));
+            List<Map<String, Object>> pending = jdbcTemplate.queryForList(SELECT_PENDING_SQL, createdBefore, sweepBatchSize);
+            for (Map<String, Object> row : pending) {
+                Long roomId = ((Number) row.get("id")).longValue();
+                if (!submit(roomId, (String) row.get("image_ref"))) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Image processing sweep failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Whatever is still queued stays image_meta IS NULL and is picked up by the next sweep
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void process(Long roomId, String imageRef) {
+        try {
+            Map<String, Object> meta = processTimer.recordCallable(() -> buildVariants(imageRef));
+            int updated = jdbcTemplate.update(UPDATE_META_SQL, objectMapper.writeValueAsString(meta), roomId, imageRef);
+            if (updated > 0) {
+                roomCache.invalidate(roomId);
+            }
+        } catch (UnsupportedImageException e) {
+            failures.increment();
+            markFailed(roomId, imageRef, e.getMessage());
+        } catch (Exception e) {
+            failures.increment();
+            Integer attempts = recordAttempt(roomId, imageRef, e.getMessage());
+            if (attempts == null) {
+                // Finished, failed or replaced meanwhile
+                return;
+            }
+            if (attempts >= maxAttempts) {
+                markFailed(roomId, imageRef, "Gave up after " + attempts + " attempts: " + e.getMessage());
+            } else {
+                log.warn("Image processing failed for roomId={} (attempt {}/{}), will retry", roomId, attempts, maxAttempts, e);
+            }
+        } finally {
+            inFlight.remove(roomId);
+        }
+    }
+
+    private Integer recordAttempt(Long roomId, String imageRef, String reason) {
+        try {
+            List<Integer> attempts = jdbcTemplate.queryForList(RECORD_ATTEMPT_SQL, Integer.class, reason, roomId, imageRef);
+            return attempts.isEmpty() ? null : attempts.get(0);
+        } catch (RuntimeException e) {
+            log.error("Failed to record image processing attempt for roomId={}", roomId, e);
+            return null;
+        }
+    }
+
+    private Map<String, Object> buildVariants(String imageRef) throws IOException {
+        BufferedImage source;
+        int width;
+        int height;
+        try (InputStream in = blobStore.openRead(imageRef);
+             ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = iis != null ? ImageIO.getImageReaders(iis) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new UnsupportedImageException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new UnsupportedImageException("Image too large: " + width + "x" + height);
+                }
+
+                // Decode once, skipping source pixels the largest output does not need
+                int largestOutput = Math.max(thumbWidth, variantWidths.length > 0 ? variantWidths[0] : thumbWidth);
+                int subsampling = Math.max(1, width / largestOutput);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                source = toRgb(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedImageException("Corrupt image: " + e.getMessage());
+        }
+
+        List<Map<String, Object>> variants = new ArrayList<>();
+        BufferedImage previous = source;
+        for (int variantWidth : variantWidths) {
+            if (variantWidth >= source.getWidth() && !variants.isEmpty()) {
+                continue;
+            }
+            BufferedImage scaled = scaleToWidth(previous, Math.min(variantWidth, source.getWidth()));
+            variants.add(writeVariant(imageRef, "w" + scaled.getWidth(), scaled));
+            previous = scaled;
+        }
+        BufferedImage thumb = scaleToWidth(previous, Math.min(thumbWidth, previous.getWidth()));
+        Map<String, Object> thumbVariant = writeVariant(imageRef, "thumb", thumb);
+
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("width", width);
+        meta.put("height", height);
+        meta.put("thumb_ref", thumbVariant.get("ref"));
+        meta.put("thumb_width", thumbVariant.get("width"));
+        meta.put("thumb_height", thumbVariant.get("height"));
+        meta.put("variants", variants);
+        meta.put("processed_at", Instant.now().toString());
+        return meta;
+    }
+
+    // Deterministic refs: a retry overwrites the objects of an earlier partial run instead of leaking new ones
+    private Map<String, Object> writeVariant(String imageRef, String name, BufferedImage image) throws IOException {
+        String ref = imageRef + "." + name + ".jpg";
+        blobStore.write(ref, encodeJpeg(image), VARIANT_CONTENT_TYPE);
+
+        Map<String, Object> variant = new LinkedHashMap<>();
+        variant.put("ref", ref);
+        variant.put("width", image.getWidth());
+        variant.put("height", image.getHeight());
+        variant.put("type", VARIANT_CONTENT_TYPE);
+        return variant;
+    }
+
+    private BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        // JPEG has no alpha: flatten transparent areas onto white
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private BufferedImage scaleToWidth(BufferedImage src, int targetWidth) {
+        if (targetWidth >= src.getWidth()) {
+            return src;
+        }
+        int targetHeight = Math.max(1, (int) Math.round((double) src.getHeight() * targetWidth / src.getWidth()));
+
+        // Halve in steps: a single bilinear pass over a large ratio drops too many source pixels
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        while (w > targetWidth) {
+            w = Math.max(targetWidth, w / 2);
+            h = w == targetWidth ? targetHeight : Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void markFailed(Long roomId, String imageRef, String reason) {
+        log.error("Image processing failed permanently for roomId={}: {}", roomId, reason);
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("status", STATUS_FAILED);
+        meta.put("reason", reason);
+        meta.put("processed_at", Instant.now().toString());
+        try {
+            // A FAILED status takes the room out of the sweep
+            if (jdbcTemplate.update(UPDATE_META_SQL, objectMapper.writeValueAsString(meta), roomId, imageRef) > 0) {
+                roomCache.invalidate(roomId);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.error("Failed to record image processing failure for roomId={}", roomId, e);
+        }
+    }
+
+    private static class UnsupportedImageException extends IOException {
+        UnsupportedImageException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.internos.secret.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Single-node / test store: state lives in this JVM only
+@Component
+@ConditionalOnProperty(name = "app.lockout.store", havingValue = "memory")
+public class InMemoryLockoutStore implements LockoutStore {
+
+    private final long windowMs;
+    private final Map<String, Deque<Long>> failures = new ConcurrentHashMap<>();
+    private final Map<String, Long> locks = new ConcurrentHashMap<>();
+
+    public InMemoryLockoutStore(@Value("${app.lockout.window-sec}") int windowSec) {
+        this.windowMs = windowSec * 1000L;
+    }
+
+    @Override
+    public long recordFailure(Long roomId, String ipHash) {
+        long now = System.currentTimeMillis();
+        long[] count = new long[1];
+        // compute() serializes updates per key, so concurrent failures are never lost
+        failures.compute(key(roomId, ipHash), (k, timestamps) -> {
+            Deque<Long> window = timestamps != null ? timestamps : new ArrayDeque<>();
+            evictOlderThan(window, now - windowMs);
+            window.addLast(now);
+            count[0] = window.size();
+            return window;
+        });
+        return count[0];
+    }
+
+    @Override
+    public long getFailCount(Long roomId, String ipHash) {
+        long now = System.currentTimeMillis();
+        long[] count = new long[1];
+        failures.computeIfPresent(key(roomId, ipHash), (k, window) -> {
+            evictOlderThan(window, now - windowMs);
+            count[0] = window.size();
+            return window.isEmpty() ? null : window;
+        });
+        return count[0];
+    }
+
+    @Override
+    public void clearFailures(Long roomId, String ipHash) {
+        failures.remove(key(roomId, ipHash));
+    }
+
+    @Override
+    public void lock(Long roomId, String ipHash, int ttlSec) {
+        locks.put(key(roomId, ipHash), System.currentTimeMillis() + ttlSec * 1000L);
+    }
+
+    @Override
+    public long lockRemainingMillis(Long roomId, String ipHash) {
+        Long until = locks.get(key(roomId, ipHash));
+        if (until == null) {
+            return 0L;
+        }
+        return Math.max(0L, until - System.currentTimeMillis());
+    }
+
+    @Override
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        locks.values().removeIf(until -> until <= now);
+        for (String key : failures.keySet()) {
+            failures.computeIfPresent(key, (k, window) -> {
+                evictOlderThan(window, now - windowMs);
+                return window.isEmpty() ? null : window;
+            });
+        }
+    }
+
+    private void evictOlderThan(Deque<Long> window, long cutoff) {
+        while (!window.isEmpty() && window.peekFirst() <= cutoff) {
+            window.pollFirst();
+        }
+    }
+
+    private String key(Long roomId, String ipHash) {
+        return roomId + ":" + ipHash;
+    }
+}
@@ -0,0 +1,55 @@
+package com.internos.secret.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Filesystem stand-in for local runs and tests
+@Component
+@ConditionalOnProperty(name = "app.storage.blob-store", havingValue = "local")
+public class LocalBlobStore implements BlobStore {
+
+    private final Path root;
+
+    public LocalBlobStore(@Value("${app.storage.local-dir}") String localDir) {
+        this.root = Path.of(localDir).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public InputStream openRead(String ref) throws IOException {
+        Path path = resolve(ref);
+        if (!Files.isRegularFile(path)) {
+            throw new FileNotFoundException(ref);
+        }
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void write(String ref, byte[] data, String contentType) throws IOException {
+        Path path = resolve(ref);
+        Files.createDirectories(path.getParent());
+        // Write then rename, so readers never see a partial object
+        Path tmp = Files.createTempFile(path.getParent(), ".upload-", ".tmp");
+        try {
+            Files.write(tmp, data);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path resolve(String ref) throws IOException {
+        Path path = root.resolve(ref).normalize();
+        if (!path.startsWith(root)) {
+            throw new IOException("Ref escapes the storage directory: " + ref);
+        }
+        return path;
+    }
+}
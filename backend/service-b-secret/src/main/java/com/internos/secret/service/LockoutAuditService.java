@@ -0,0 +1,55 @@
+package com.internos.secret.service;
+
+import com.internos.secret.entity.Lockout;
+import com.internos.secret.repository.LockoutRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Writes lockout rows to Postgres off the request path; the table is an audit trail, not the source of truth
+@Service
+@Slf4j
+public class LockoutAuditService {
+
+    private final LockoutRepository lockoutRepository;
+    private final ThreadPoolExecutor executor;
+
+    public LockoutAuditService(LockoutRepository lockoutRepository) {
+        this.lockoutRepository = lockoutRepository;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("lockout-audit-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000), threadFactory);
+    }
+
+    public void recordLockout(Long roomId, String ipHash, Instant until) {
+        try {
+            executor.execute(() -> {
+                try {
+                    lockoutRepository.save(Lockout.builder()
+                            .roomId(roomId)
+                            .ipHash(ipHash)
+                            .until(until)
+                            .build());
+                } catch (Exception e) {
+                    log.error("Failed to write lockout audit row for roomId={}", roomId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Lockout audit queue full, skipping audit row for roomId={}", roomId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
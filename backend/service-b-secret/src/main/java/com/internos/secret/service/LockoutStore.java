@@ -0,0 +1,28 @@
+package com.internos.secret.service;
+
+import java.util.List;
+
+public interface LockoutStore {
+
+    // Adds one failure for (roomId, ipHash) and returns the failures counted in the sliding window
+    long recordFailure(Long roomId, String ipHash);
+
+    long getFailCount(Long roomId, String ipHash);
+
+    void clearFailures(Long roomId, String ipHash);
+
+    void lock(Long roomId, String ipHash, int ttlSec);
+
+    // Remaining lock time in milliseconds, 0 when not locked
+    long lockRemainingMillis(Long roomId, String ipHash);
+
+    // Redis keys the solve preflight script reads in its single round trip: the lock key, then the failure
+    // buckets. They carry the solver's hash tag. Empty when the state does not live in Redis
+    default List<String> preflightKeys(Long roomId, String ipHash) {
+        return List.of();
+    }
+
+    // Drops expired state that is not cleaned up by the store itself (Redis keys expire on their own)
+    default void purgeExpired() {
+    }
+}
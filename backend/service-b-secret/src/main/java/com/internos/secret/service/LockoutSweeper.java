@@ -0,0 +1,68 @@
+package com.internos.secret.service;
+
+import com.internos.secret.repository.LockoutRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+@Service
+@Slf4j
+public class LockoutSweeper {
+
+    private final LockoutRepository lockoutRepository;
+    private final LockoutStore lockoutStore;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+    private final Counter purgedRows;
+    private final Timer sweepTimer;
+
+    public LockoutSweeper(LockoutRepository lockoutRepository,
+                          LockoutStore lockoutStore,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.lockout.purge.chunk-size}") int chunkSize,
+                          @Value("${app.lockout.purge.max-chunks-per-run}") int maxChunksPerRun) {
+        this.lockoutRepository = lockoutRepository;
+        this.lockoutStore = lockoutStore;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.purgedRows = Counter.builder("lockout.purge.rows")
+                .description("Expired lockout rows deleted by the sweeper")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("lockout.purge.duration")
+                .description("Duration of one lockout sweep")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.lockout.purge.interval-ms}",
+               initialDelayString = "${app.lockout.purge.interval-ms}")
+    public void sweep() {
+        sweepTimer.record(() -> {
+            lockoutStore.purgeExpired();
+
+            Instant now = Instant.now();
+            long total = 0;
+            try {
+                // Each chunk is its own short transaction; stop early once a chunk comes back short
+                for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+                    int deleted = lockoutRepository.deleteExpiredChunk(now, chunkSize);
+                    total += deleted;
+                    purgedRows.increment(deleted);
+                    if (deleted < chunkSize) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Lockout sweep failed after purging {} rows", total, e);
+            }
+            if (total > 0) {
+                log.info("Purged {} expired lockout rows", total);
+            }
+        });
+    }
+}
@@ -1,10 +1,18 @@
 package com.internos.secret.service;
 
+import com.internos.secret.util.RedisKeys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -13,47 +21,140 @@ import java.util.concurrent.TimeUnit;
 public class NonceService {
 
     private static final String NONCE_PREFIX = "nonce:";
-    
-    private final RedisTemplate<String, Object> redisTemplate;
+    private static final String USED_NONCE_PREFIX = "nonce:used:";
+    private static final String SIGNED_VERSION = "v1";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
+    private final StringRedisTemplate stringRedisTemplate;
     private final int nonceTtlSec;
+    private final boolean signed;
+    private final SecretKeySpec keySpec;
+    private final SecureRandom random = new SecureRandom();
 
-    public NonceService(RedisTemplate<String, Object> redisTemplate,
-                       @Value("${app.solve.nonce-ttl-sec}") int nonceTtlSec) {
-        this.redisTemplate = redisTemplate;
+    public NonceService(StringRedisTemplate stringRedisTemplate,
+                       @Value("${app.solve.nonce-ttl-sec}") int nonceTtlSec,
+                       @Value("${app.solve.nonce-mode}") String nonceMode,
+                       @Value("${app.security.session-secret}") String sessionSecret) {
+        this.stringRedisTemplate = stringRedisTemplate;
         this.nonceTtlSec = nonceTtlSec;
+        this.signed = "signed".equalsIgnoreCase(nonceMode);
+        this.keySpec = new SecretKeySpec(sessionSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
     }
 
     public String generateNonce(Long roomId) {
+        if (signed) {
+            return generateSignedNonce(roomId);
+        }
+
         String nonce = UUID.randomUUID().toString();
-        String key = NONCE_PREFIX + nonce;
-        
-        // Store nonce -> roomId mapping with TTL
-        redisTemplate.opsForValue().set(key, roomId, nonceTtlSec, TimeUnit.SECONDS);
-        
+        String key = nonceKey(nonce, roomId);
+
+        // Store nonce -> roomId mapping with TTL (plain string so Lua scripts can read it)
+        stringRedisTemplate.opsForValue().set(key, String.valueOf(roomId), nonceTtlSec, TimeUnit.SECONDS);
+
         return nonce;
     }
 
-    public Long validateAndConsumeNonce(String nonce) {
-        String key = NONCE_PREFIX + nonce;
-        Object value = redisTemplate.opsForValue().get(key);
-        
-        if (value == null) {
+    // Undoes the preflight's consume/claim when the solve could not be evaluated, so the client can retry
+    // with the same nonce. A stored nonce comes back with a fresh TTL
+    public void restore(String nonce, Long roomId) {
+        try {
+            if (signed) {
+                stringRedisTemplate.delete(nonceKey(nonce, roomId));
+            } else {
+                stringRedisTemplate.opsForValue().setIfAbsent(nonceKey(nonce, roomId), String.valueOf(roomId),
+                        nonceTtlSec, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to restore nonce for roomId={}", roomId, e);
+        }
+    }
+
+    public boolean isSigned() {
+        return signed;
+    }
+
+    // Stored nonce in redis mode, replay marker (one per signature, whoever presents it) in signed mode.
+    // Tagged with the room like the lockout keys so the preflight script stays within one cluster slot
+    public String nonceKey(String nonce, Long roomId) {
+        String tag = RedisKeys.roomTag(roomId);
+        if (signed) {
+            int sigStart = nonce.lastIndexOf('.');
+            return USED_NONCE_PREFIX + tag + ":" + (sigStart >= 0 ? nonce.substring(sigStart + 1) : nonce);
+        }
+        return NONCE_PREFIX + tag + ":" + nonce;
+    }
+
+    // Checks signature and expiry of a signed nonce without any I/O
+    public SignedNonce verifySigned(String nonce) {
+        if (nonce == null) {
             return null;
         }
-        
-        // Consume nonce (delete after use)
-        redisTemplate.delete(key);
-        
-        if (value instanceof Number) {
-            return ((Number) value).longValue();
+        String[] parts = nonce.split("\\.");
+        if (parts.length != 5 || !SIGNED_VERSION.equals(parts[0])) {
+            return null;
+        }
+
+        String payload = parts[0] + "." + parts[1] + "." + parts[2] + "." + parts[3];
+        byte[] expected = sign(payload);
+        byte[] actual;
+        try {
+            actual = B64_DECODER.decode(parts[4]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+
+        try {
+            long roomId = Long.parseLong(parts[1]);
+            long expiresAtMillis = Long.parseLong(parts[2]) * 1000L;
+            long remainingMillis = expiresAtMillis - System.currentTimeMillis();
+            if (remainingMillis <= 0) {
+                return null;
+            }
+            return new SignedNonce(roomId, remainingMillis);
+        } catch (NumberFormatException e) {
+            return null;
         }
-        
-        return null;
     }
 
-    public boolean isValidNonce(String nonce) {
-        String key = NONCE_PREFIX + nonce;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+    private String generateSignedNonce(Long roomId) {
+        byte[] randomBytes = new byte[12];
+        random.nextBytes(randomBytes);
+        long expiresAtSec = System.currentTimeMillis() / 1000L + nonceTtlSec;
+
+        String payload = SIGNED_VERSION + "." + roomId + "." + expiresAtSec + "." + B64.encodeToString(randomBytes);
+        return payload + "." + B64.encodeToString(sign(payload));
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(keySpec);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign nonce", e);
+        }
     }
-}
 
+    public static class SignedNonce {
+        private final Long roomId;
+        private final long remainingMillis;
+
+        public SignedNonce(Long roomId, long remainingMillis) {
+            this.roomId = roomId;
+            this.remainingMillis = remainingMillis;
+        }
+
+        public Long getRoomId() {
+            return roomId;
+        }
+
+        public long getRemainingMillis() {
+            return remainingMillis;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.internos.secret.service;
+
+import com.internos.secret.repository.RoomDifficultyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Top-K "trending" and "hard" rankings rebuilt in the background and swapped in whole;
+// requests only ever read the current snapshot
+@Service
+@Slf4j
+public class RankingSnapshotService {
+
+    public enum Kind { TRENDING, HARD }
+
+    private final TrendingLeaderboard trendingLeaderboard;
+    private final RoomDifficultyRepository roomDifficultyRepository;
+    private final RoomCache roomCache;
+    private final HotnessScorer hotnessScorer;
+    private final ContentVersionService contentVersionService;
+    private final Clock clock;
+    private final int topK;
+    private final Timer buildTimer;
+    private final Counter buildFailures;
+    private volatile Snapshot current = Snapshot.EMPTY;
+
+    public RankingSnapshotService(TrendingLeaderboard trendingLeaderboard,
+                                  RoomDifficultyRepository roomDifficultyRepository,
+                                  RoomCache roomCache,
+                                  HotnessScorer hotnessScorer,
+                                  ContentVersionService contentVersionService,
+                                  Clock clock,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.ranking.top-k}") int topK) {
+        this.trendingLeaderboard = trendingLeaderboard;
+        this.roomDifficultyRepository = roomDifficultyRepository;
+        this.roomCache = roomCache;
+        this.hotnessScorer = hotnessScorer;
+        this.contentVersionService = contentVersionService;
+        this.clock = clock;
+        this.topK = topK;
+
+        this.buildTimer = Timer.builder("ranking.snapshot.build")
+                .description("Time to rebuild the ranking snapshot, off the request path")
+                .register(meterRegistry);
+        this.buildFailures = Counter.builder("ranking.snapshot.build.failures")
+                .description("Rebuilds that failed and left the previous snapshot in place")
+                .register(meterRegistry);
+        Gauge.builder("ranking.snapshot.age.seconds", this, RankingSnapshotService::ageSeconds)
+                .description("Seconds since the snapshot being served was built")
+                .register(meterRegistry);
+        for (Kind kind : Kind.values()) {
+            Gauge.builder("ranking.snapshot.size", this, service -> service.current.ranking(kind).size())
+                    .tag("kind", kind.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.ranking.refresh-interval-ms}",
+               fixedDelayString = "${app.ranking.refresh-interval-ms}")
+    public void rebuild() {
+        long started = System.nanoTime();
+        try {
+            Instant now = clock.instant();
+            Ranking trending = buildTrending();
+            Ranking hard = buildHard();
+            // Feed ETags only move when what the feeds would show actually changed
+            boolean changed = !current.trending.sameAs(trending) || !current.hard.sameAs(hard);
+            current = new Snapshot(trending, hard, now);
+            if (changed) {
+                contentVersionService.bumpFeedStats();
+            }
+            long elapsedNanos = System.nanoTime() - started;
+            buildTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            log.debug("Rebuilt ranking snapshot (trending={}, hard={}) in {} ms",
+                    trending.size(), hard.size(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        } catch (Exception e) {
+            // Keep serving the previous snapshot; its age gauge shows how stale it gets
+            buildFailures.increment();
+            log.error("Ranking snapshot rebuild failed", e);
+        }
+    }
+
+    public Snapshot current() {
+        return current;
+    }
+
+    // Decayed hotness as of now for rooms in the trending top-K, 0 for everyone else
+    public double hotness(long roomId) {
+        Double logScore = current.trendingLogScores.get(roomId);
+        return logScore != null ? hotnessScorer.score(logScore) : 0.0;
+    }
+
+    // Keyset page after the cursor (null for the first page); cost is a binary search plus the page itself.
+    // Rooms hidden since the build are skipped, not backfilled
+    public Page page(Snapshot snapshot, Kind kind, String cursor, int count) {
+        Ranking ranking = snapshot.ranking(kind);
+        Position position = cursor != null ? decodeCursor(kind, cursor) : null;
+        int from = position != null ? ranking.firstAfter(position) : 0;
+        int to = Math.min(ranking.size(), from + count);
+        List<Long> ids = new ArrayList<>(count);
+        List<Double> scores = new ArrayList<>(count);
+        for (int i = from; i < to; i++) {
+            ids.add(ranking.ids[i]);
+            scores.add(ranking.scores[i]);
+        }
+        Position last = to > from ? new Position(ranking.keys[to - 1], ranking.ids[to - 1]) : position;
+        boolean more = to < ranking.size();
+
+        // The hard ranking is a top-K of a table ranking every room: past the snapshot, keep going in the table
+        if (kind == Kind.HARD && !more && ranking.size() >= topK && ids.size() < count) {
+            int remaining = count - ids.size();
+            List<RoomDifficultyRepository.RankedRoom> rows = last != null
+                    ? roomDifficultyRepository.findHardestAfter(-last.key, last.id, remaining)
+                    : roomDifficultyRepository.findHardestFirstPage(remaining);
+            for (RoomDifficultyRepository.RankedRoom row : rows) {
+                ids.add(row.getRoomId());
+                scores.add(row.getDifficulty());
+                last = new Position(-row.getDifficulty(), row.getRoomId());
+            }
+            more = rows.size() == remaining;
+        }
+
+        Map<Long, RoomSnapshot> rooms = roomCache.getAll(ids);
+        Instant now = clock.instant();
+        List<Entry> entries = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            RoomSnapshot room = rooms.get(ids.get(i));
+            if (room != null && room.isListable(now)) {
+                entries.add(new Entry(room, scores.get(i)));
+            }
+        }
+        // Continue after the last position read, listed or not, so a hidden room cannot stall paging
+        String nextCursor = more && last != null ? encodeCursor(kind, last.key, last.id) : null;
+        return new Page(entries, nextCursor);
+    }
+
+    // Trending keys are the time-invariant log-space hotness scores, negated so every ranking reads ascending
+    private Ranking buildTrending() {
+        List<TrendingLeaderboard.Entry> top = trendingLeaderboard.top(0, topK);
+        long[] ids = new long[top.size()];
+        double[] keys = new double[top.size()];
+        double[] scores = new double[top.size()];
+        for (int i = 0; i < top.size(); i++) {
+            ids[i] = top.get(i).getRoom().getId();
+            keys[i] = -top.get(i).getRankKey();
+            scores[i] = top.get(i).getScore();
+        }
+        return Ranking.sorted(ids, keys, scores);
+    }
+
+    // Hardest first by the precomputed Bayesian difficulty; keys are negated so the ranking reads ascending
+    private Ranking buildHard() {
+        List<RoomDifficultyRepository.RankedRoom> rows = roomDifficultyRepository.findHardestFirstPage(topK);
+        long[] ids = new long[rows.size()];
+        double[] keys = new double[rows.size()];
+        double[] scores = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            ids[i] = rows.get(i).getRoomId();
+            keys[i] = -rows.get(i).getDifficulty();
+            scores[i] = rows.get(i).getDifficulty();
+        }
+        return new Ranking(ids, keys, scores);
+    }
+
+    // Opaque to clients: base64url of kind, exact key bits and room id
+    private static String encodeCursor(Kind kind, double key, long id) {
+        String raw = kind.name().charAt(0) + ":" + Long.toHexString(Double.doubleToRawLongBits(key)) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Position decodeCursor(Kind kind, String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3 || parts[0].charAt(0) != kind.name().charAt(0)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new Position(Double.longBitsToDouble(Long.parseUnsignedLong(parts[1], 16)), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private double ageSeconds() {
+        Instant builtAt = current.getBuiltAt();
+        return builtAt == null ? Double.NaN : Duration.between(builtAt, clock.instant()).toMillis() / 1000.0;
+    }
+
+    private static final class Position {
+        private final double key;
+        private final long id;
+
+        private Position(double key, long id) {
+            this.key = key;
+            this.id = id;
+        }
+    }
+
+    // Parallel arrays ordered by (key, id) ascending; never modified after construction
+    private static final class Ranking {
+        private static final Ranking EMPTY = new Ranking(new long[0], new double[0], new double[0]);
+
+        private final long[] ids;
+        private final double[] keys;
+        private final double[] scores;
+        private final Set<Long> members;
+
+        private Ranking(long[] ids, double[] keys, double[] scores) {
+            this.ids = ids;
+            this.keys = keys;
+            this.scores = scores;
+            Set<Long> members = new HashSet<>(ids.length * 2);
+            for (long id : ids) {
+                members.add(id);
+            }
+            this.members = members;
+        }
+
+        private static Ranking sorted(long[] ids, double[] keys, double[] scores) {
+            Integer[] order = new Integer[ids.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> compare(keys[a], ids[a], keys[b], ids[b]));
+            long[] sortedIds = new long[ids.length];
+            double[] sortedKeys = new double[ids.length];
+            double[] sortedScores = new double[ids.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedIds[i] = ids[order[i]];
+                sortedKeys[i] = keys[order[i]];
+                sortedScores[i] = scores[order[i]];
+            }
+            return new Ranking(sortedIds, sortedKeys, sortedScores);
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        // Compares the stored keys, not the decayed scores, which drift with the clock alone
+        private boolean sameAs(Ranking other) {
+            return Arrays.equals(ids, other.ids) && Arrays.equals(keys, other.keys);
+        }
+
+        // Index of the first entry strictly after the position
+        private int firstAfter(Position position) {
+            int lo = 0;
+            int hi = ids.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(keys[mid], ids[mid], position.key, position.id) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private static int compare(double keyA, long idA, double keyB, long idB) {
+            int byKey = Double.compare(keyA, keyB);
+            return byKey != 0 ? byKey : Long.compare(idA, idB);
+        }
+    }
+
+    public static class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(Ranking.EMPTY, Ranking.EMPTY, null);
+
+        private final Ranking trending;
+        private final Ranking hard;
+        private final Instant builtAt;
+        private final Map<Long, Double> trendingLogScores;
+
+        private Snapshot(Ranking trending, Ranking hard, Instant builtAt) {
+            this.trending = trending;
+            this.hard = hard;
+            this.builtAt = builtAt;
+            Map<Long, Double> logScores = new HashMap<>(trending.size() * 2);
+            for (int i = 0; i < trending.size(); i++) {
+                // Trending keys are negated log scores
+                logScores.put(trending.ids[i], -trending.keys[i]);
+            }
+            this.trendingLogScores = Collections.unmodifiableMap(logScores);
+        }
+
+        private Ranking ranking(Kind kind) {
+            return kind == Kind.TRENDING ? trending : hard;
+        }
+
+        public int size(Kind kind) {
+            return ranking(kind).size();
+        }
+
+        public boolean contains(Kind kind, long roomId) {
+            return ranking(kind).members.contains(roomId);
+        }
+
+        public Instant getBuiltAt() {
+            return builtAt;
+        }
+    }
+
+    public static class Page {
+        private final List<Entry> entries;
+        private final String nextCursor;
+
+        public Page(List<Entry> entries, String nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    public static class Entry {
+        private final RoomSnapshot room;
+        private final double score;
+
+        public Entry(RoomSnapshot room, double score) {
+            this.room = room;
+            this.score = score;
+        }
+
+        public RoomSnapshot getRoom() {
+            return room;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
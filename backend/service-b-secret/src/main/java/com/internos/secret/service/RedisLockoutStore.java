@@ -0,0 +1,106 @@
+package com.internos.secret.service;
+
+import com.internos.secret.util.RedisKeys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(name = "app.lockout.store", havingValue = "redis", matchIfMissing = true)
+public class RedisLockoutStore implements LockoutStore {
+
+    private static final String FAIL_COUNT_PREFIX = "lockout:fail:";
+    private static final String LOCK_PREFIX = "lockout:lock:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int bucketSec;
+    private final int bucketCount;
+    private final DefaultRedisScript<Long> recordFailureScript;
+
+    public RedisLockoutStore(StringRedisTemplate stringRedisTemplate,
+                             @Value("${app.lockout.window-sec}") int windowSec,
+                             @Value("${app.lockout.bucket-sec}") int bucketSec) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.bucketSec = bucketSec;
+        this.bucketCount = Math.max(1, (windowSec + bucketSec - 1) / bucketSec);
+
+        this.recordFailureScript = new DefaultRedisScript<>();
+        this.recordFailureScript.setLocation(new ClassPathResource("redis/lockout-record-failure.lua"));
+        this.recordFailureScript.setResultType(Long.class);
+    }
+
+    @Override
+    public long recordFailure(Long roomId, String ipHash) {
+        // INCR of the current bucket and the window sum happen atomically inside one script
+        long bucketTtlSec = (long) (bucketCount + 1) * bucketSec;
+        Long count = stringRedisTemplate.execute(recordFailureScript, failKeys(roomId, ipHash),
+                String.valueOf(bucketTtlSec));
+        return count != null ? count : 0L;
+    }
+
+    @Override
+    public long getFailCount(Long roomId, String ipHash) {
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(failKeys(roomId, ipHash));
+        if (values == null) {
+            return 0L;
+        }
+        long total = 0;
+        for (String value : values) {
+            if (value != null) {
+                try {
+                    total += Long.parseLong(value);
+                } catch (NumberFormatException ignored) {
+                    // Not one of ours; treat as empty bucket
+                }
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void clearFailures(Long roomId, String ipHash) {
+        stringRedisTemplate.delete(failKeys(roomId, ipHash));
+    }
+
+    @Override
+    public void lock(Long roomId, String ipHash, int ttlSec) {
+        // An active lock is just a key with a TTL, so lookups never touch Postgres
+        stringRedisTemplate.opsForValue().set(lockKey(roomId, ipHash), "1", ttlSec, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public long lockRemainingMillis(Long roomId, String ipHash) {
+        Long ttl = stringRedisTemplate.getExpire(lockKey(roomId, ipHash), TimeUnit.MILLISECONDS);
+        return ttl != null && ttl > 0 ? ttl : 0L;
+    }
+
+    @Override
+    public List<String> preflightKeys(Long roomId, String ipHash) {
+        List<String> keys = new ArrayList<>(bucketCount + 1);
+        keys.add(lockKey(roomId, ipHash));
+        keys.addAll(failKeys(roomId, ipHash));
+        return keys;
+    }
+
+    private String lockKey(Long roomId, String ipHash) {
+        return LOCK_PREFIX + RedisKeys.roomTag(roomId) + ":" + ipHash;
+    }
+
+    // Bucket keys covering the current window, oldest first
+    private List<String> failKeys(Long roomId, String ipHash) {
+        long currentBucket = System.currentTimeMillis() / 1000L / bucketSec;
+        String prefix = FAIL_COUNT_PREFIX + RedisKeys.roomTag(roomId) + ":" + ipHash + ":";
+        List<String> keys = new ArrayList<>(bucketCount);
+        for (long bucket = currentBucket - bucketCount + 1; bucket <= currentBucket; bucket++) {
+            keys.add(prefix + bucket);
+        }
+        return keys;
+    }
+}
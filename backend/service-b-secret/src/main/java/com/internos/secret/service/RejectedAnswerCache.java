@@ -0,0 +1,84 @@
+package com.internos.secret.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Slf4j
+public class RejectedAnswerCache {
+
+    // Fingerprints grouped per room, so invalidating a room is a single key removal
+    private final Cache<Long, Set<String>> rejected;
+    private final SecretKeySpec keySpec;
+
+    public RejectedAnswerCache(MeterRegistry meterRegistry,
+                               RedisMessageListenerContainer listenerContainer,
+                               @Value("${app.security.session-secret}") String secret,
+                               @Value("${app.solve.rejected-answer-memo.max-size}") long maxSize,
+                               @Value("${app.solve.rejected-answer-memo.ttl-sec}") int ttlSec) {
+        this.keySpec = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.rejected = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((Long roomId, Set<String> keys) -> Math.max(1, keys.size()))
+                .expireAfterWrite(Duration.ofSeconds(ttlSec))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rejected, "solve.rejected_answers");
+
+        // Room edits on any node are announced on the room cache channel; the answer may have changed
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                invalidateRoom(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8)));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed room invalidation message");
+            }
+        }, new ChannelTopic(RoomCache.INVALIDATION_CHANNEL));
+    }
+
+    // Only an HMAC of the answer is kept, so the memo never holds plaintext guesses
+    public String keyFor(String answer) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(keySpec);
+            byte[] digest = mac.doFinal(answer.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to compute answer fingerprint", e);
+        }
+    }
+
+    public boolean isKnownWrong(Long roomId, String key) {
+        Set<String> keys = rejected.getIfPresent(roomId);
+        return keys != null && keys.contains(key);
+    }
+
+    // compute() re-puts the set so the weigher sees its new size
+    public void rememberWrong(Long roomId, String key) {
+        rejected.asMap().compute(roomId, (id, keys) -> {
+            Set<String> updated = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            updated.add(key);
+            return updated;
+        });
+    }
+
+    // Local only; other nodes drop theirs when RoomCache publishes the same room id after commit
+    public void invalidateRoom(Long roomId) {
+        rejected.invalidate(roomId);
+    }
+}
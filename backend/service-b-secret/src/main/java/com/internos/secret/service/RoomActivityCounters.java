@@ -0,0 +1,386 @@
+package com.internos.secret.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sliding 1h attempt/correct counts per room: a ring of per-minute buckets held in primitive arrays,
+// so memory does not depend on traffic and the GC never sees per-room objects
+@Service
+@Slf4j
+public class RoomActivityCounters {
+
+    private static final int BUCKETS = 60;
+    private static final int BUCKET_SEC = 60;
+    private static final int SEGMENTS = 64;
+    private static final int MAX_BUCKET_COUNT = 0xFFFF;
+    // Rows younger than this may still sit in the attempt write-behind buffer
+    private static final int FLUSH_LAG_SEC = 5;
+
+    // Rooms spilled out of a full table are read from the rollup; cached briefly so a feed page costs one query per room at most
+    private static final int SPILLED_COUNTS_TTL_SEC = 10;
+    private static final String ROOM_WINDOW_SQL =
+            "SELECT COALESCE(SUM(attempts), 0) AS attempts, COALESCE(SUM(correct), 0) AS correct " +
+            "FROM attempt_stats_minute_live WHERE room_id = ? AND bucket >= ?";
+    private static final String MINUTE_COUNTS_SQL =
+            "SELECT room_id, FLOOR(EXTRACT(EPOCH FROM bucket) / 60)::bigint AS minute, attempts, correct " +
+            "FROM attempt_stats_minute_live WHERE bucket >= ? AND bucket < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ContentVersionService contentVersionService;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Counter dropped;
+    // Rooms that found no free slot within the last hour, and their window counts read from the rollup
+    private final Cache<Long, Boolean> spilled;
+    private final Cache<Long, Long> spilledCounts;
+    private final Timer resyncTimer;
+    // Change tracking for the feed stats version: attempts recorded here and the newest minute holding any
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicInteger newestActiveMinute = new AtomicInteger(Integer.MIN_VALUE);
+    private long publishedRecorded;
+    private int publishedMinute = Integer.MIN_VALUE;
+
+    public RoomActivityCounters(JdbcTemplate jdbcTemplate,
+                                ContentVersionService contentVersionService,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.stats.counters.initial-slots}") int initialSlots,
+                                @Value("${app.stats.counters.max-slots}") int maxSlots) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.contentVersionService = contentVersionService;
+        int initialPerSegment = Integer.highestOneBit(Math.max(16, initialSlots / SEGMENTS));
+        int maxPerSegment = Integer.highestOneBit(Math.max(initialPerSegment, maxSlots / SEGMENTS));
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(initialPerSegment, maxPerSegment);
+        }
+
+        this.spilled = Caffeine.newBuilder()
+                .maximumSize(maxSlots)
+                .expireAfterWrite(Duration.ofSeconds((long) BUCKETS * BUCKET_SEC))
+                .build();
+        this.spilledCounts = Caffeine.newBuilder()
+                .maximumSize(maxSlots)
+                .expireAfterWrite(Duration.ofSeconds(SPILLED_COUNTS_TTL_SEC))
+                .build();
+
+        Gauge.builder("room.activity.rooms", this, RoomActivityCounters::trackedRooms)
+                .description("Rooms with a counter slot")
+                .register(meterRegistry);
+        Gauge.builder("room.activity.slots", this, RoomActivityCounters::allocatedSlots)
+                .description("Allocated counter slots (about 264 bytes each)")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("room.activity.dropped")
+                .description("Attempts that found every slot in use; their room is read from the rollup instead")
+                .register(meterRegistry);
+        this.resyncTimer = Timer.builder("room.activity.resync")
+                .description("Time to reload the last hour of minute buckets from the rollup")
+                .register(meterRegistry);
+    }
+
+    public void record(Long roomId, boolean correct) {
+        int nowMinute = minuteOf(Instant.now());
+        if (!segmentFor(roomId).apply(roomId, nowMinute, nowMinute, 1, correct ? 1 : 0, false)) {
+            dropped.increment();
+            spilled.put(roomId, Boolean.TRUE);
+        }
+        recorded.incrementAndGet();
+        newestActiveMinute.accumulateAndGet(nowMinute, Math::max);
+    }
+
+    // The 1h figures change when an attempt lands or when a minute holding attempts leaves the window;
+    // only then does the shared feed stats version move
+    @Scheduled(fixedDelayString = "${app.http-cache.feed-max-age-sec}", timeUnit = TimeUnit.SECONDS)
+    public void publishStatsChanges() {
+        int nowMinute = minuteOf(Instant.now());
+        long recordedNow = recorded.get();
+        boolean changed = recordedNow != publishedRecorded
+                || (newestActiveMinute.get() + BUCKETS > publishedMinute && nowMinute > publishedMinute);
+        publishedRecorded = recordedNow;
+        publishedMinute = nowMinute;
+        if (changed) {
+            contentVersionService.bumpFeedStats();
+        }
+    }
+
+    // Packed (attempts << 32 | correct) over the last hour; use attempts() / correct() to unpack
+    public long windowCounts(Long roomId) {
+        if (spilled.getIfPresent(roomId) != null) {
+            return spilledCounts.get(roomId, this::loadWindowCounts);
+        }
+        return segmentFor(roomId).read(roomId, minuteOf(Instant.now()));
+    }
+
+    public static int attempts(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    public static int correct(long packed) {
+        return (int) packed;
+    }
+
+    // Completed minutes are overwritten with what Postgres has, which also folds in attempts served by other nodes
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.stats.counters.resync-interval-ms}",
+               fixedDelayString = "${app.stats.counters.resync-interval-ms}")
+    public void resync() {
+        Instant now = Instant.now();
+        int nowMinute = minuteOf(now);
+        int cutoffMinute = minuteOf(now.minusSeconds(FLUSH_LAG_SEC));
+        Timestamp from = Timestamp.from(Instant.ofEpochSecond((long) (nowMinute - BUCKETS + 1) * BUCKET_SEC));
+        Timestamp to = Timestamp.from(Instant.ofEpochSecond((long) cutoffMinute * BUCKET_SEC));
+
+        long started = System.nanoTime();
+        int[] rows = new int[1];
+        try {
+            jdbcTemplate.query(MINUTE_COUNTS_SQL, rs -> {
+                long roomId = rs.getLong("room_id");
+                int minute = (int) rs.getLong("minute");
+                // Attempts other nodes served (or this node saw before a restart) also age out of the window
+                newestActiveMinute.accumulateAndGet(minute, Math::max);
+                if (segmentFor(roomId).apply(roomId, minute, nowMinute, rs.getInt("attempts"), rs.getInt("correct"), true)) {
+                    // Completed minutes are in the slot now; the rest of the window follows from record()
+                    spilled.invalidate(roomId);
+                } else {
+                    dropped.increment();
+                    spilled.put(roomId, Boolean.TRUE);
+                }
+                rows[0]++;
+            }, from, to);
+            long elapsedNanos = System.nanoTime() - started;
+            resyncTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            log.debug("Resynced {} room-minute buckets in {} ms", rows[0], TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        } catch (Exception e) {
+            log.error("Room activity resync failed", e);
+        }
+    }
+
+    private Segment segmentFor(long roomId) {
+        return segments[(int) (mix(roomId) >>> 58)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private long loadWindowCounts(Long roomId) {
+        int nowMinute = minuteOf(Instant.now());
+        Timestamp from = Timestamp.from(Instant.ofEpochSecond((long) (nowMinute - BUCKETS + 1) * BUCKET_SEC));
+        return jdbcTemplate.queryForObject(ROOM_WINDOW_SQL, (rs, rowNum) ->
+                rs.getLong("attempts") << 32 | (rs.getLong("correct") & 0xFFFFFFFFL), roomId, from);
+    }
+
+    private static int minuteOf(Instant instant) {
+        return (int) (instant.getEpochSecond() / BUCKET_SEC);
+    }
+
+    private double trackedRooms() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    private double allocatedSlots() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.capacity();
+        }
+        return total;
+    }
+
+    // Open-addressing table (linear probing); slot i owns buckets[i * BUCKETS .. i * BUCKETS + BUCKETS)
+    private static final class Segment {
+        private final int maxCapacity;
+        private long[] keys;
+        // Minute the ring was last rolled forward to (moved by reads too)
+        private int[] lastMinute;
+        // Minute of the newest counted attempt; only this decides whether a slot can be reclaimed
+        private int[] lastWrite;
+        private int[] totalAttempts;
+        private int[] totalCorrect;
+        // Per-minute counts packed as attempts << 16 | correct, each saturating at 0xFFFF
+        private int[] buckets;
+        private int size;
+
+        private Segment(int capacity, int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            lastMinute = new int[capacity];
+            lastWrite = new int[capacity];
+            totalAttempts = new int[capacity];
+            totalCorrect = new int[capacity];
+            buckets = new int[capacity * BUCKETS];
+            size = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int capacity() {
+            return keys.length;
+        }
+
+        // Adds to (or, with overwrite, replaces) one minute bucket; false when the room has no slot and none is free
+        synchronized boolean apply(long roomId, int minute, int nowMinute, int attempts, int correct, boolean overwrite) {
+            if (minute <= nowMinute - BUCKETS || minute > nowMinute) {
+                return true;
+            }
+            int slot = findOrInsert(roomId, nowMinute);
+            if (slot < 0) {
+                return false;
+            }
+            advance(slot, nowMinute);
+
+            int index = slot * BUCKETS + Math.floorMod(minute, BUCKETS);
+            int packed = buckets[index];
+            int oldAttempts = packed >>> 16;
+            int oldCorrect = packed & MAX_BUCKET_COUNT;
+            int newAttempts = Math.min(MAX_BUCKET_COUNT, overwrite ? attempts : oldAttempts + attempts);
+            int newCorrect = Math.min(MAX_BUCKET_COUNT, overwrite ? correct : oldCorrect + correct);
+            buckets[index] = newAttempts << 16 | newCorrect;
+            if (newAttempts > 0) {
+                lastWrite[slot] = Math.max(lastWrite[slot], minute);
+            }
+            totalAttempts[slot] += newAttempts - oldAttempts;
+            totalCorrect[slot] += newCorrect - oldCorrect;
+            return true;
+        }
+
+        synchronized long read(long roomId, int nowMinute) {
+            int slot = find(roomId);
+            if (slot < 0) {
+                return 0L;
+            }
+            advance(slot, nowMinute);
+            return (long) totalAttempts[slot] << 32 | (totalCorrect[slot] & 0xFFFFFFFFL);
+        }
+
+        // Rolls the ring forward to nowMinute, dropping the minutes that left the window
+        private void advance(int slot, int nowMinute) {
+            int last = lastMinute[slot];
+            if (nowMinute <= last) {
+                return;
+            }
+            int base = slot * BUCKETS;
+            if (nowMinute - last >= BUCKETS) {
+                Arrays.fill(buckets, base, base + BUCKETS, 0);
+                totalAttempts[slot] = 0;
+                totalCorrect[slot] = 0;
+            } else {
+                for (int m = last + 1; m <= nowMinute; m++) {
+                    int index = base + Math.floorMod(m, BUCKETS);
+                    int packed = buckets[index];
+                    totalAttempts[slot] -= packed >>> 16;
+                    totalCorrect[slot] -= packed & MAX_BUCKET_COUNT;
+                    buckets[index] = 0;
+                }
+            }
+            lastMinute[slot] = nowMinute;
+        }
+
+        private int find(long roomId) {
+            int mask = keys.length - 1;
+            for (int i = (int) mix(roomId) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == roomId) {
+                    return i;
+                }
+                if (keys[i] == 0L) {
+                    return -1;
+                }
+            }
+        }
+
+        private int findOrInsert(long roomId, int nowMinute) {
+            int slot = find(roomId);
+            if (slot >= 0) {
+                return slot;
+            }
+            if ((size + 1) * 4L > keys.length * 3L) {
+                // Reclaim rooms with no attempt in the whole window before growing
+                int live = countLive(nowMinute);
+                int capacity = keys.length;
+                while ((live + 1) * 4L > capacity * 3L && capacity < maxCapacity) {
+                    capacity <<= 1;
+                }
+                if ((live + 1) * 4L > capacity * 3L) {
+                    return -1;
+                }
+                rehash(capacity, nowMinute);
+            }
+            int mask = keys.length - 1;
+            int i = (int) mix(roomId) & mask;
+            while (keys[i] != 0L) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = roomId;
+            lastMinute[i] = nowMinute;
+            // Reclaimable until apply() counts an attempt, which stamps the minute it belongs to (resync replays old ones)
+            lastWrite[i] = nowMinute - BUCKETS;
+            size++;
+            return i;
+        }
+
+        private int countLive(int nowMinute) {
+            int live = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0L && nowMinute - lastWrite[i] < BUCKETS) {
+                    live++;
+                }
+            }
+            return live;
+        }
+
+        private void rehash(int capacity, int nowMinute) {
+            long[] oldKeys = keys;
+            int[] oldLastMinute = lastMinute;
+            int[] oldLastWrite = lastWrite;
+            int[] oldTotalAttempts = totalAttempts;
+            int[] oldTotalCorrect = totalCorrect;
+            int[] oldBuckets = buckets;
+
+            allocate(capacity);
+            int mask = capacity - 1;
+            for (int from = 0; from < oldKeys.length; from++) {
+                // Rooms that were only read during the window have nothing to keep
+                if (oldKeys[from] == 0L || nowMinute - oldLastWrite[from] >= BUCKETS) {
+                    continue;
+                }
+                int to = (int) mix(oldKeys[from]) & mask;
+                while (keys[to] != 0L) {
+                    to = (to + 1) & mask;
+                }
+                keys[to] = oldKeys[from];
+                lastMinute[to] = oldLastMinute[from];
+                lastWrite[to] = oldLastWrite[from];
+                totalAttempts[to] = oldTotalAttempts[from];
+                totalCorrect[to] = oldTotalCorrect[from];
+                System.arraycopy(oldBuckets, from * BUCKETS, buckets, to * BUCKETS, BUCKETS);
+                size++;
+            }
+        }
+    }
+}
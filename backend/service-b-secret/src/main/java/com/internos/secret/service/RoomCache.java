@@ -0,0 +1,105 @@
+package com.internos.secret.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.internos.secret.entity.SecretRoom;
+import com.internos.secret.repository.SecretRoomRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@Slf4j
+public class RoomCache {
+
+    static final String INVALIDATION_CHANNEL = "room:invalidate";
+
+    private final SecretRoomRepository roomRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Cache<Long, RoomSnapshot> cache;
+
+    public RoomCache(SecretRoomRepository roomRepository,
+                     StringRedisTemplate stringRedisTemplate,
+                     RedisMessageListenerContainer listenerContainer,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.room-cache.max-size}") long maxSize,
+                     @Value("${app.room-cache.ttl-sec}") int ttlSec) {
+        this.roomRepository = roomRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSec))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "room.cache");
+
+        // Other nodes publish the ids they changed; drop our copy when they do
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                evictLocal(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8)));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed room invalidation message");
+            }
+        }, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    // Read-through; concurrent misses for the same id share a single query
+    public Optional<RoomSnapshot> get(Long roomId) {
+        return Optional.ofNullable(cache.get(roomId,
+                id -> roomRepository.findById(id).map(RoomSnapshot::from).orElse(null)));
+    }
+
+    // Cached rooms plus one findAllById for the misses; unknown ids are absent from the result
+    public Map<Long, RoomSnapshot> getAll(Collection<Long> roomIds) {
+        return cache.getAll(roomIds, missing -> {
+            Map<Long, RoomSnapshot> loaded = new HashMap<>();
+            for (SecretRoom room : roomRepository.findAllById(new ArrayList<Long>(missing))) {
+                loaded.put(room.getId(), RoomSnapshot.from(room));
+            }
+            return loaded;
+        });
+    }
+
+    // Evicts after the surrounding transaction commits, so a concurrent reload cannot cache the old row
+    public void invalidate(Long roomId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictEverywhere(roomId);
+                }
+            });
+        } else {
+            evictEverywhere(roomId);
+        }
+    }
+
+    private void evictEverywhere(Long roomId) {
+        evictLocal(roomId);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.valueOf(roomId));
+        } catch (Exception e) {
+            // Other nodes fall back to the TTL
+            log.warn("Failed to publish room invalidation for roomId={}", roomId, e);
+        }
+    }
+
+    private void evictLocal(Long roomId) {
+        cache.invalidate(roomId);
+    }
+}
@@ -0,0 +1,137 @@
+package com.internos.secret.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+// Bayesian difficulty per room. The all-time solve rate is shrunk toward the global rate with
+// priorWeight pseudo-attempts; the recent rate is then shrunk toward that room's all-time rate, so a
+// couple of lucky or unlucky guesses cannot move a room far. Stored as 1 - rate, NULL below minAttempts.
+//
+// Per-room totals (room_difficulty) and the global totals behind the prior (room_difficulty_totals) are
+// running sums: each rollup run retracts the minutes it is about to re-aggregate, adds them back once
+// rewritten, and drops the minutes that slid out of the recent window. Work follows the range, not history.
+@Service
+@Slf4j
+public class RoomDifficultyService {
+
+    // Old values of [from, to), read before the rollup overwrites those minutes
+    private static final String RETRACT_SQL =
+            "WITH old AS (" +
+            "  SELECT room_id, SUM(attempts) AS attempts, SUM(correct) AS correct, " +
+            "         COALESCE(SUM(attempts) FILTER (WHERE bucket >= :previousRecentFrom), 0) AS recent_attempts, " +
+            "         COALESCE(SUM(correct) FILTER (WHERE bucket >= :previousRecentFrom), 0) AS recent_correct " +
+            "  FROM attempt_stats_minute WHERE bucket >= :from AND bucket < :to " +
+            "  GROUP BY room_id" +
+            "), totals AS (" +
+            "  UPDATE room_difficulty_totals SET " +
+            "    attempts = attempts - (SELECT COALESCE(SUM(attempts), 0) FROM old), " +
+            "    correct = correct - (SELECT COALESCE(SUM(correct), 0) FROM old)" +
+            ") " +
+            "UPDATE room_difficulty rd SET attempts = rd.attempts - o.attempts, correct = rd.correct - o.correct, " +
+            "recent_attempts = rd.recent_attempts - o.recent_attempts, recent_correct = rd.recent_correct - o.recent_correct " +
+            "FROM old o WHERE rd.room_id = o.room_id";
+
+    // Rewritten values of [from, to), minus untouched minutes that left the recent window since the last run
+    private static final String APPLY_SQL =
+            "WITH fresh AS (" +
+            "  SELECT room_id, SUM(attempts) AS attempts, SUM(correct) AS correct, " +
+            "         COALESCE(SUM(attempts) FILTER (WHERE bucket >= :recentFrom), 0) AS recent_attempts, " +
+            "         COALESCE(SUM(correct) FILTER (WHERE bucket >= :recentFrom), 0) AS recent_correct " +
+            "  FROM attempt_stats_minute WHERE bucket >= :from AND bucket < :to " +
+            "  GROUP BY room_id" +
+            "), expired AS (" +
+            "  SELECT room_id, SUM(attempts) AS attempts, SUM(correct) AS correct " +
+            "  FROM attempt_stats_minute WHERE bucket >= :expiredFrom AND bucket < :expiredTo " +
+            "  GROUP BY room_id" +
+            "), totals AS (" +
+            "  UPDATE room_difficulty_totals SET " +
+            "    attempts = attempts + (SELECT COALESCE(SUM(attempts), 0) FROM fresh), " +
+            "    correct = correct + (SELECT COALESCE(SUM(correct), 0) FROM fresh)" +
+            ") " +
+            "INSERT INTO room_difficulty (room_id, attempts, correct, recent_attempts, recent_correct, updated_at) " +
+            "SELECT COALESCE(f.room_id, e.room_id), COALESCE(f.attempts, 0), COALESCE(f.correct, 0), " +
+            "       COALESCE(f.recent_attempts, 0) - COALESCE(e.attempts, 0), " +
+            "       COALESCE(f.recent_correct, 0) - COALESCE(e.correct, 0), NOW() " +
+            "FROM fresh f FULL JOIN expired e ON e.room_id = f.room_id " +
+            "ON CONFLICT (room_id) DO UPDATE SET attempts = room_difficulty.attempts + EXCLUDED.attempts, " +
+            "correct = room_difficulty.correct + EXCLUDED.correct, " +
+            "recent_attempts = room_difficulty.recent_attempts + EXCLUDED.recent_attempts, " +
+            "recent_correct = room_difficulty.recent_correct + EXCLUDED.recent_correct, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    // Re-scores only the rooms whose totals just moved, against the updated global rate
+    private static final String SCORE_SQL =
+            "UPDATE room_difficulty rd SET difficulty = CASE WHEN rd.attempts < :minAttempts THEN NULL ELSE " +
+            "  1 - (rd.recent_correct + :priorWeight * ((rd.correct + :priorWeight * p.rate) / (rd.attempts + :priorWeight))) " +
+            "      / (rd.recent_attempts + :priorWeight) END " +
+            "FROM (SELECT COALESCE(CAST(correct AS double precision) / NULLIF(attempts, 0), :defaultPrior) AS rate " +
+            "      FROM room_difficulty_totals) p " +
+            "WHERE rd.room_id IN (" +
+            "  SELECT room_id FROM attempt_stats_minute " +
+            "  WHERE (bucket >= :from AND bucket < :to) OR (bucket >= :expiredFrom AND bucket < :expiredTo))";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Duration recentWindow;
+    private final double priorWeight;
+    private final long minAttempts;
+    private final double defaultPrior;
+    private final Timer refreshTimer;
+
+    public RoomDifficultyService(NamedParameterJdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.stats.difficulty.recent-window-hours}") long recentWindowHours,
+                                 @Value("${app.stats.difficulty.prior-weight}") double priorWeight,
+                                 @Value("${app.stats.difficulty.min-attempts}") long minAttempts,
+                                 @Value("${app.stats.difficulty.default-prior}") double defaultPrior) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.recentWindow = Duration.ofHours(recentWindowHours);
+        this.priorWeight = priorWeight;
+        this.minAttempts = minAttempts;
+        this.defaultPrior = defaultPrior;
+        this.refreshTimer = Timer.builder("stats.difficulty.refresh")
+                .description("Time to recompute difficulty for the rooms touched by one rollup run")
+                .register(meterRegistry);
+    }
+
+    // Runs inside the rollup transaction, right before [from, to) is re-aggregated.
+    // previousTo is the watermark the last run advanced to
+    public void retract(Instant from, Instant to, Instant previousTo) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.from(from))
+                .addValue("to", Timestamp.from(to))
+                .addValue("previousRecentFrom", Timestamp.from(previousTo.minus(recentWindow)));
+        jdbcTemplate.update(RETRACT_SQL, params);
+    }
+
+    // Runs inside the rollup transaction, right after [from, to) has been upserted
+    public int refresh(Instant from, Instant to, Instant previousTo) {
+        Instant recentFrom = to.minus(recentWindow);
+        // Minutes at or after from were retracted with their old recent share; the rest leave here
+        Instant expiredTo = recentFrom.isBefore(from) ? recentFrom : from;
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.from(from))
+                .addValue("to", Timestamp.from(to))
+                .addValue("recentFrom", Timestamp.from(recentFrom))
+                .addValue("expiredFrom", Timestamp.from(previousTo.minus(recentWindow)))
+                .addValue("expiredTo", Timestamp.from(expiredTo))
+                .addValue("defaultPrior", defaultPrior)
+                .addValue("priorWeight", priorWeight)
+                .addValue("minAttempts", minAttempts);
+
+        long started = System.nanoTime();
+        jdbcTemplate.update(APPLY_SQL, params);
+        int rooms = jdbcTemplate.update(SCORE_SQL, params);
+        refreshTimer.record(Duration.ofNanos(System.nanoTime() - started));
+        log.debug("Refreshed difficulty for {} rooms", rooms);
+        return rooms;
+    }
+}
@@ -1,21 +1,27 @@
 package com.internos.secret.service;
 
 import com.internos.secret.dto.*;
+import com.internos.secret.entity.RoomDifficulty;
 import com.internos.secret.entity.SecretRoom;
 import com.internos.secret.exception.ForbiddenException;
 import com.internos.secret.exception.NotFoundException;
-import com.internos.secret.repository.AttemptRepository;
+import com.internos.secret.repository.RoomDifficultyRepository;
 import com.internos.secret.repository.SecretRoomRepository;
 import com.internos.secret.security.AuthenticationContext;
 import com.internos.secret.security.AuthenticationContextHolder;
 import com.internos.secret.util.PasswordUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -25,22 +31,53 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RoomService {
 
+    // Marks cursors in the unranked tail of a ranked feed; never produced by base64url
+    private static final String UNRANKED_CURSOR_PREFIX = "n.";
+    private static final int MAX_UNRANKED_ROUNDS = 3;
+
     private final SecretRoomRepository roomRepository;
-    private final AttemptRepository attemptRepository;
+    private final RoomActivityCounters roomActivityCounters;
     private final PasswordUtil passwordUtil;
     private final AuthenticationContextHolder authContextHolder;
     private final StorageService storageService;
+    private final RejectedAnswerCache rejectedAnswerCache;
+    private final RoomCache roomCache;
+    private final ContentVersionService contentVersionService;
+    private final ImageProcessingService imageProcessingService;
+    private final TrendingLeaderboard trendingLeaderboard;
+    private final RankingSnapshotService rankingSnapshotService;
+    private final RoomDifficultyRepository roomDifficultyRepository;
+    private final ViewBudgetService viewBudgetService;
+    private final double hotThreshold;
 
     public RoomService(SecretRoomRepository roomRepository,
-                     AttemptRepository attemptRepository,
+                     RoomActivityCounters roomActivityCounters,
                      PasswordUtil passwordUtil,
                      AuthenticationContextHolder authContextHolder,
-                     StorageService storageService) {
+                     StorageService storageService,
+                     RejectedAnswerCache rejectedAnswerCache,
+                     RoomCache roomCache,
+                     ContentVersionService contentVersionService,
+                     ImageProcessingService imageProcessingService,
+                     TrendingLeaderboard trendingLeaderboard,
+                     RankingSnapshotService rankingSnapshotService,
+                     RoomDifficultyRepository roomDifficultyRepository,
+                     ViewBudgetService viewBudgetService,
+                     @Value("${app.trending.hot-threshold}") double hotThreshold) {
         this.roomRepository = roomRepository;
-        this.attemptRepository = attemptRepository;
+        this.roomActivityCounters = roomActivityCounters;
         this.passwordUtil = passwordUtil;
         this.authContextHolder = authContextHolder;
         this.storageService = storageService;
+        this.rejectedAnswerCache = rejectedAnswerCache;
+        this.roomCache = roomCache;
+        this.contentVersionService = contentVersionService;
+        this.imageProcessingService = imageProcessingService;
+        this.trendingLeaderboard = trendingLeaderboard;
+        this.rankingSnapshotService = rankingSnapshotService;
+        this.roomDifficultyRepository = roomDifficultyRepository;
+        this.viewBudgetService = viewBudgetService;
+        this.hotThreshold = hotThreshold;
     }
 
     @Transactional
@@ -84,6 +121,11 @@ public class RoomService {
 
         SecretRoom room = builder.build();
         room = roomRepository.save(room);
+        viewBudgetService.prime(room);
+        contentVersionService.bumpFeed();
+        if (room.getContentType() == SecretRoom.ContentType.IMAGE) {
+            imageProcessingService.submitAfterCommit(room.getId(), room.getImageRef());
+        }
 
         // Generate share URL
         String shareUrl = generateShareUrl(room.getId());
@@ -95,20 +137,18 @@ public class RoomService {
     }
 
     public RoomMeta getRoomMeta(Long roomId) {
+        return toRoomMeta(findVisibleRoom(roomId));
+    }
+
+    public RoomSnapshot findVisibleRoom(Long roomId) {
         Optional<AuthenticationContext> authOpt = authContextHolder.getContext();
-        
-        SecretRoom room;
-        if (authOpt.isPresent()) {
-            // If authenticated, allow access to own private rooms
-            room = roomRepository.findByIdForOwner(roomId, authOpt.get().getUserId())
-                    .orElseThrow(() -> new NotFoundException("Room not found"));
-        } else {
-            // Public rooms only
-            room = roomRepository.findPublicById(roomId)
-                    .orElseThrow(() -> new NotFoundException("Room not found"));
-        }
 
-        return toRoomMeta(room);
+        // Signed-in users see public rooms and their own; anonymous users only active public rooms
+        return roomCache.get(roomId)
+                .filter(r -> authOpt.isPresent()
+                        ? r.getVisibility() == SecretRoom.Visibility.PUBLIC || r.getOwnerId().equals(authOpt.get().getUserId())
+                        : r.getVisibility() == SecretRoom.Visibility.PUBLIC && r.getIsActive())
+                .orElseThrow(() -> new NotFoundException("Room not found"));
     }
 
     @Transactional
@@ -131,8 +171,16 @@ public class RoomService {
         if (req.getPolicy() != null) room.setPolicy(req.getPolicy());
         if (req.getViewLimit() != null) room.setViewLimit(req.getViewLimit());
         if (req.getExpiresAt() != null) room.setExpiresAt(req.getExpiresAt());
+        room.setUpdatedAt(Instant.now());
 
         roomRepository.save(room);
+        viewBudgetService.prime(room);
+        rejectedAnswerCache.invalidateRoom(roomId);
+        roomCache.invalidate(roomId);
+        contentVersionService.bumpFeed();
+        if (room.getVisibility() != SecretRoom.Visibility.PUBLIC) {
+            trendingLeaderboard.remove(roomId);
+        }
 
         return UpdatedResp.builder().updated(true).build();
     }
@@ -151,104 +199,184 @@ public class RoomService {
         }
 
         roomRepository.delete(room);
+        rejectedAnswerCache.invalidateRoom(roomId);
+        roomCache.invalidate(roomId);
+        contentVersionService.bumpFeed();
+        trendingLeaderboard.remove(roomId);
     }
 
     public PublicRoomsResp getPublicRooms(String sort, Integer limit, String cursor) {
         int pageSize = limit != null ? Math.min(limit, 50) : 20;
-        Pageable pageable = PageRequest.of(0, pageSize);
-
-        List<SecretRoom> rooms;
-        Instant cursorInstant = cursor != null ? Instant.parse(cursor) : null;
-
-        switch (sort != null ? sort : "trending") {
-            case "new":
-                rooms = cursorInstant != null 
-                    ? roomRepository.findPublicRoomsWithCursor(cursorInstant, pageable)
-                    : roomRepository.findPublicRoomsOrderByNew(pageable);
-                break;
-            case "trending":
-            case "hard":
-            default:
-                // For trending and hard, we need to fetch and sort by metrics
-                rooms = cursorInstant != null 
-                    ? roomRepository.findPublicRoomsWithCursor(cursorInstant, pageable)
-                    : roomRepository.findPublicRoomsOrderByNew(pageable);
-                // Will sort by metrics after fetching
-                break;
+        if (sort == null || "trending".equals(sort)) {
+            return getRankedRooms(RankingSnapshotService.Kind.TRENDING, pageSize, cursor);
         }
-
-        List<PublicRoomCard> cards = rooms.stream()
-                .map(room -> toPublicRoomCard(room, sort))
+        if ("hard".equals(sort)) {
+            return getRankedRooms(RankingSnapshotService.Kind.HARD, pageSize, cursor);
+        }
+        NewFeedCursor position = cursor != null ? NewFeedCursor.decode(cursor) : null;
+        List<SecretRoomRepository.PublicCardRow> rows = position != null
+                ? roomRepository.findPublicCardsAfter(position.createdAt, position.id, pageSize)
+                : roomRepository.findPublicCardsFirstPage(pageSize);
+
+        Map<Long, Double> difficulties = loadDifficulties(rows.stream()
+                .map(SecretRoomRepository.PublicCardRow::getId)
+                .collect(Collectors.toList()));
+        List<PublicRoomCard> cards = rows.stream()
+                .map(row -> toPublicRoomCard(row, difficulties))
                 .collect(Collectors.toList());
 
-        // Sort if needed
-        if ("trending".equals(sort) || "hard".equals(sort)) {
-            cards.sort((a, b) -> {
-                if ("trending".equals(sort)) {
-                    // Sort by attempts1h * solveRate1h (trending score)
-                    double scoreA = (a.getAttempts1h() != null ? a.getAttempts1h() : 0) * 
-                                   (a.getSolveRate1h() != null ? a.getSolveRate1h() : 0);
-                    double scoreB = (b.getAttempts1h() != null ? b.getAttempts1h() : 0) * 
-                                   (b.getSolveRate1h() != null ? b.getSolveRate1h() : 0);
-                    return Double.compare(scoreB, scoreA); // Descending
-                } else {
-                    // Sort by low solve rate (hard)
-                    double rateA = a.getSolveRate1h() != null ? a.getSolveRate1h() : 0;
-                    double rateB = b.getSolveRate1h() != null ? b.getSolveRate1h() : 0;
-                    return Double.compare(rateA, rateB); // Ascending (lower = harder)
-                }
-            });
+        // A short page is the last one
+        String nextCursor = null;
+        if (rows.size() == pageSize) {
+            SecretRoomRepository.PublicCardRow lastRow = rows.get(rows.size() - 1);
+            nextCursor = NewFeedCursor.encode(lastRow.getCreatedAt(), lastRow.getId());
         }
 
-        // Get next cursor
+        return PublicRoomsResp.builder()
+                .items(cards)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // Keyset pages over the precomputed global ranking; the opaque cursor pins (score, id) of the last row read.
+    // Once the ranking runs out, paging continues through the unranked rooms, newest first
+    private PublicRoomsResp getRankedRooms(RankingSnapshotService.Kind kind, int pageSize, String cursor) {
+        RankingSnapshotService.Snapshot snapshot = rankingSnapshotService.current();
+        List<RoomSnapshot> ranked = new ArrayList<>();
         String nextCursor = null;
-        if (!cards.isEmpty()) {
-            SecretRoom lastRoom = rooms.get(rooms.size() - 1);
-            nextCursor = lastRoom.getCreatedAt().toString();
+        boolean inTail = cursor != null && cursor.startsWith(UNRANKED_CURSOR_PREFIX);
+        if (!inTail) {
+            RankingSnapshotService.Page page = rankingSnapshotService.page(snapshot, kind, cursor, pageSize);
+            page.getEntries().forEach(entry -> ranked.add(entry.getRoom()));
+            nextCursor = page.getNextCursor();
+        }
+
+        List<SecretRoomRepository.PublicCardRow> unranked = new ArrayList<>();
+        Map<Long, Double> difficulties = new HashMap<>();
+        if (nextCursor == null && ranked.size() < pageSize) {
+            NewFeedCursor position = inTail
+                    ? NewFeedCursor.decode(cursor.substring(UNRANKED_CURSOR_PREFIX.length()))
+                    : null;
+            boolean more = true;
+            for (int round = 0; round < MAX_UNRANKED_ROUNDS && more && ranked.size() + unranked.size() < pageSize; round++) {
+                List<SecretRoomRepository.PublicCardRow> rows = position != null
+                        ? roomRepository.findPublicCardsAfter(position.createdAt, position.id, pageSize)
+                        : roomRepository.findPublicCardsFirstPage(pageSize);
+                more = rows.size() == pageSize;
+                difficulties.putAll(loadDifficulties(rows.stream()
+                        .map(SecretRoomRepository.PublicCardRow::getId)
+                        .collect(Collectors.toList())));
+                for (SecretRoomRepository.PublicCardRow row : rows) {
+                    if (ranked.size() + unranked.size() >= pageSize) {
+                        more = true;
+                        break;
+                    }
+                    position = new NewFeedCursor(row.getCreatedAt(), row.getId());
+                    if (!isRanked(snapshot, kind, row.getId(), difficulties)) {
+                        unranked.add(row);
+                    }
+                }
+            }
+            // The cursor is the last row read (listed or skipped), so skipped rooms cannot stall paging
+            nextCursor = more && position != null
+                    ? UNRANKED_CURSOR_PREFIX + NewFeedCursor.encode(position.createdAt, position.id)
+                    : null;
         }
 
+        difficulties.putAll(loadDifficulties(ranked.stream().map(RoomSnapshot::getId).collect(Collectors.toList())));
+        List<PublicRoomCard> cards = new ArrayList<>(ranked.size() + unranked.size());
+        ranked.forEach(room -> cards.add(toPublicRoomCard(room, difficulties)));
+        unranked.forEach(row -> cards.add(toPublicRoomCard(row, difficulties)));
+
         return PublicRoomsResp.builder()
                 .items(cards)
                 .nextCursor(nextCursor)
                 .build();
     }
 
-    private PublicRoomCard toPublicRoomCard(SecretRoom room, String sort) {
-        Instant oneHourAgo = Instant.now().minusSeconds(3600);
-        
-        Long attempts1h = attemptRepository.countByRoomIdSince(room.getId(), oneHourAgo);
-        Long correct1h = attemptRepository.countCorrectByRoomIdSince(room.getId(), oneHourAgo);
-        
+    // Rooms the ranked pages already covered: the trending top-K, or any room with a difficulty for "hard"
+    // (the hard ranking continues past its top-K into room_difficulty)
+    private boolean isRanked(RankingSnapshotService.Snapshot snapshot, RankingSnapshotService.Kind kind,
+                             Long roomId, Map<Long, Double> difficulties) {
+        if (kind == RankingSnapshotService.Kind.HARD) {
+            return difficulties.containsKey(roomId);
+        }
+        return snapshot.contains(kind, roomId);
+    }
+
+    // One primary-key lookup per page; rooms below the minimum evidence have no entry
+    private Map<Long, Double> loadDifficulties(Collection<Long> roomIds) {
+        Map<Long, Double> difficulties = new HashMap<>();
+        if (roomIds.isEmpty()) {
+            return difficulties;
+        }
+        for (RoomDifficulty difficulty : roomDifficultyRepository.findAllById(roomIds)) {
+            if (difficulty.getDifficulty() != null) {
+                difficulties.put(difficulty.getRoomId(), difficulty.getDifficulty());
+            }
+        }
+        return difficulties;
+    }
+
+    private PublicRoomCard toPublicRoomCard(RoomSnapshot room, Map<Long, Double> difficulties) {
+        return toPublicRoomCard(room.getId(), room.getTitle(), room.getHint(), room.getOwnerName(), room.getContentType(),
+                difficulties.get(room.getId()));
+    }
+
+    private PublicRoomCard toPublicRoomCard(SecretRoomRepository.PublicCardRow row, Map<Long, Double> difficulties) {
+        return toPublicRoomCard(row.getId(), row.getTitle(), row.getHint(), row.getOwnerName(), row.getContentType(),
+                difficulties.get(row.getId()));
+    }
+
+    private PublicRoomCard toPublicRoomCard(Long id, String title, String hint, String ownerName,
+                                            SecretRoom.ContentType contentType, Double difficulty) {
+        // In-memory sliding window, no query per card
+        long counts = roomActivityCounters.windowCounts(id);
+        Long attempts1h = (long) RoomActivityCounters.attempts(counts);
+        Long correct1h = (long) RoomActivityCounters.correct(counts);
+
         Double solveRate1h = attempts1h > 0 ? (correct1h.doubleValue() / attempts1h.doubleValue()) : 0.0;
 
         return PublicRoomCard.builder()
-                .id(room.getId())
-                .title(room.getTitle())
-                .hint(room.getHint())
-                .ownerName(room.getOwnerName())
+                .id(id)
+                .title(title)
+                .hint(hint)
+                .ownerName(ownerName)
                 .attempts1h(attempts1h.intValue())
                 .solveRate1h(solveRate1h)
-                .badge(determineBadge(solveRate1h, attempts1h))
-                .contentType(room.getContentType())
+                .badge(determineBadge(difficulty, rankingSnapshotService.hotness(id)))
+                .contentType(contentType)
                 .build();
     }
 
-    private String determineBadge(Double solveRate, Long attempts) {
-        if (attempts == 0 || attempts < 5) {
+    // difficulty is 1 - the smoothed solve rate from room_difficulty, null until the room has enough attempts
+    private String determineBadge(Double difficulty, double hotness) {
+        // A brand-new room can already be hot; hotness does not wait for enough attempts to rate difficulty
+        if (hotness >= hotThreshold) {
+            return "HOT";
+        }
+        if (difficulty == null) {
             return "NEW";
         }
-        if (solveRate < 0.1) {
+        if (difficulty > 0.9) {
             return "HARD";
         }
-        if (solveRate > 0.8) {
+        if (difficulty < 0.2) {
             return "EASY";
         }
         return "MEDIUM";
     }
 
-    private RoomMeta toRoomMeta(SecretRoom room) {
+    // The thumbnail is a real rendering of the secret image, so only its owner is shown one
+    public boolean isOwnerView(RoomSnapshot room) {
+        return authContextHolder.getContext()
+                .map(auth -> room.getOwnerId().equals(auth.getUserId()))
+                .orElse(false);
+    }
+
+    public RoomMeta toRoomMeta(RoomSnapshot room) {
         String thumbnailUrl = null;
-        if (room.getContentType() == SecretRoom.ContentType.IMAGE && room.getImageMeta() != null) {
+        if (room.getContentType() == SecretRoom.ContentType.IMAGE && room.getImageMeta() != null && isOwnerView(room)) {
             Map<String, Object> meta = room.getImageMeta();
             Object thumbRef = meta.get("thumb_ref");
             if (thumbRef != null) {
@@ -286,5 +414,40 @@ public class RoomService {
         // In production, this would be the actual frontend URL
         return String.format("https://internos.app/s/%d", roomId);
     }
-}
 
+    // Opaque "new" feed cursor: base64url of the last row's created_at and id
+    private static final class NewFeedCursor {
+        private final Instant createdAt;
+        private final Long id;
+
+        private NewFeedCursor(Instant createdAt, Long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        private static String encode(Instant createdAt, Long id) {
+            String raw = createdAt.toString() + "," + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static NewFeedCursor decode(String cursor) {
+            try {
+                // Cursors issued before the keyset change are a bare timestamp meaning created_at < ts;
+                // no id sorts below MIN_VALUE, so every row at that instant stays excluded as before
+                return new NewFeedCursor(Instant.parse(cursor), Long.MIN_VALUE);
+            } catch (DateTimeParseException ignored) {
+                // Current format
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int comma = raw.indexOf(',');
+                if (comma < 0) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return new NewFeedCursor(Instant.parse(raw.substring(0, comma)), Long.valueOf(raw.substring(comma + 1)));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.internos.secret.service;
+
+import com.internos.secret.entity.SecretRoom;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Immutable copy of a SecretRoom row, safe to share between requests through RoomCache
+@Value
+@Builder
+public class RoomSnapshot {
+    Long id;
+    Long ownerId;
+    String ownerName;
+    String title;
+    String hint;
+    String answerHash;
+    SecretRoom.ContentType contentType;
+    String contentText;
+    String imageRef;
+    Map<String, Object> imageMeta;
+    String alt;
+    SecretRoom.Visibility visibility;
+    SecretRoom.Policy policy;
+    Integer viewLimit;
+    Integer viewsUsed;
+    Instant expiresAt;
+    Boolean isActive;
+    Instant createdAt;
+    Instant updatedAt;
+
+    public static RoomSnapshot from(SecretRoom room) {
+        return RoomSnapshot.builder()
+                .id(room.getId())
+                .ownerId(room.getOwnerId())
+                .ownerName(room.getOwnerName())
+                .title(room.getTitle())
+                .hint(room.getHint())
+                .answerHash(room.getAnswerHash())
+                .contentType(room.getContentType())
+                .contentText(room.getContentText())
+                .imageRef(room.getImageRef())
+                .imageMeta(room.getImageMeta() != null
+                        ? Collections.unmodifiableMap(new HashMap<>(room.getImageMeta()))
+                        : null)
+                .alt(room.getAlt())
+                .visibility(room.getVisibility())
+                .policy(room.getPolicy())
+                .viewLimit(room.getViewLimit())
+                .viewsUsed(room.getViewsUsed())
+                .expiresAt(room.getExpiresAt())
+                .isActive(room.getIsActive())
+                .createdAt(room.getCreatedAt())
+                .updatedAt(room.getUpdatedAt())
+                .build();
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && expiresAt.isBefore(now);
+    }
+
+    // May appear in public feeds and rankings
+    public boolean isListable(Instant now) {
+        return visibility == SecretRoom.Visibility.PUBLIC && Boolean.TRUE.equals(isActive) && !isExpired(now);
+    }
+}
@@ -0,0 +1,113 @@
+package com.internos.secret.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@Slf4j
+public class SolvePreflightService {
+
+    private static final long NONCE_VALID = 2L;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final NonceService nonceService;
+    private final LockoutStore lockoutStore;
+    private final DefaultRedisScript<List> preflightScript;
+
+    public SolvePreflightService(StringRedisTemplate stringRedisTemplate,
+                                 NonceService nonceService,
+                                 LockoutStore lockoutStore) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.nonceService = nonceService;
+        this.lockoutStore = lockoutStore;
+
+        this.preflightScript = new DefaultRedisScript<>();
+        this.preflightScript.setLocation(new ClassPathResource("redis/solve-preflight.lua"));
+        this.preflightScript.setResultType(List.class);
+    }
+
+    // Consumes the nonce and reads the lockout state of (roomId, ipHash) in a single Redis round trip
+    public Result run(String nonce, Long roomId, String ipHash) {
+        String mode = "consume";
+        long claimTtlMs = 0;
+        if (nonceService.isSigned()) {
+            // Signature, expiry and room are checked locally; Redis only records first use
+            NonceService.SignedNonce signed = nonceService.verifySigned(nonce);
+            if (signed == null || !signed.getRoomId().equals(roomId)) {
+                return new Result(false, 0, 0);
+            }
+            mode = "claim";
+            claimTtlMs = signed.getRemainingMillis();
+        }
+
+        // Lockout state is read by the same script, in the same round trip; all keys share the room's hash tag
+        List<String> lockoutKeys = lockoutStore.preflightKeys(roomId, ipHash);
+        List<String> keys = new ArrayList<>(lockoutKeys.size() + 1);
+        keys.add(nonceService.nonceKey(nonce, roomId));
+        keys.addAll(lockoutKeys);
+
+        List<?> reply = stringRedisTemplate.execute(preflightScript, keys,
+                String.valueOf(roomId), mode, String.valueOf(claimTtlMs));
+        if (reply == null || reply.size() < 3) {
+            return new Result(false, 0, 0);
+        }
+
+        boolean nonceValid = toLong(reply.get(0)) == NONCE_VALID;
+        if (!nonceValid) {
+            return new Result(false, 0, 0);
+        }
+
+        int failCount;
+        long lockTtlMs;
+        if (!lockoutKeys.isEmpty()) {
+            failCount = (int) toLong(reply.get(1));
+            lockTtlMs = toLong(reply.get(2));
+        } else {
+            // In-process store: no I/O involved
+            failCount = (int) lockoutStore.getFailCount(roomId, ipHash);
+            lockTtlMs = lockoutStore.lockRemainingMillis(roomId, ipHash);
+        }
+
+        // Locked exactly as long as the lock key lives; the failure that reaches the threshold sets it
+        int retryAfterSec = lockTtlMs > 0 ? (int) Math.max(1, (lockTtlMs + 999) / 1000) : 0;
+        return new Result(true, failCount, retryAfterSec);
+    }
+
+    private long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    public static class Result {
+        private final boolean nonceValid;
+        private final int failCount;
+        private final int retryAfterSec;
+
+        public Result(boolean nonceValid, int failCount, int retryAfterSec) {
+            this.nonceValid = nonceValid;
+            this.failCount = failCount;
+            this.retryAfterSec = retryAfterSec;
+        }
+
+        public boolean isNonceValid() {
+            return nonceValid;
+        }
+
+        public int getFailCount() {
+            return failCount;
+        }
+
+        public boolean isLocked() {
+            return retryAfterSec > 0;
+        }
+
+        public int getRetryAfterSec() {
+            return retryAfterSec;
+        }
+    }
+}
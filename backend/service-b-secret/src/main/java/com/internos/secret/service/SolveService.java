@@ -5,17 +5,13 @@ import com.internos.secret.dto.SolveResp.SolvedContent;
 import com.internos.secret.entity.Attempt;
 import com.internos.secret.entity.SecretRoom;
 import com.internos.secret.exception.*;
-import com.internos.secret.repository.AttemptRepository;
 import com.internos.secret.repository.SecretRoomRepository;
 import com.internos.secret.util.IpHashUtil;
-import com.internos.secret.util.PasswordUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -23,68 +19,109 @@ import java.util.Optional;
 public class SolveService {
 
     private final SecretRoomRepository roomRepository;
-    private final AttemptRepository attemptRepository;
+    private final RoomCache roomCache;
+    private final ContentVersionService contentVersionService;
+    private final AttemptRecorder attemptRecorder;
+    private final RoomActivityCounters roomActivityCounters;
+    private final TrendingLeaderboard trendingLeaderboard;
     private final LockoutService lockoutService;
+    private final SolvePreflightService solvePreflightService;
     private final NonceService nonceService;
-    private final PasswordUtil passwordUtil;
+    private final AnswerVerificationService answerVerificationService;
+    private final RejectedAnswerCache rejectedAnswerCache;
+    private final ViewBudgetService viewBudgetService;
     private final StorageService storageService;
     private final IpHashUtil ipHashUtil;
 
     public SolveService(SecretRoomRepository roomRepository,
-                       AttemptRepository attemptRepository,
+                       RoomCache roomCache,
+                       ContentVersionService contentVersionService,
+                       AttemptRecorder attemptRecorder,
+                       RoomActivityCounters roomActivityCounters,
+                       TrendingLeaderboard trendingLeaderboard,
                        LockoutService lockoutService,
+                       SolvePreflightService solvePreflightService,
                        NonceService nonceService,
-                       PasswordUtil passwordUtil,
+                       AnswerVerificationService answerVerificationService,
+                       RejectedAnswerCache rejectedAnswerCache,
+                       ViewBudgetService viewBudgetService,
                        StorageService storageService,
                        IpHashUtil ipHashUtil) {
         this.roomRepository = roomRepository;
-        this.attemptRepository = attemptRepository;
+        this.roomCache = roomCache;
+        this.contentVersionService = contentVersionService;
+        this.attemptRecorder = attemptRecorder;
+        this.roomActivityCounters = roomActivityCounters;
+        this.trendingLeaderboard = trendingLeaderboard;
         this.lockoutService = lockoutService;
+        this.solvePreflightService = solvePreflightService;
         this.nonceService = nonceService;
-        this.passwordUtil = passwordUtil;
+        this.answerVerificationService = answerVerificationService;
+        this.rejectedAnswerCache = rejectedAnswerCache;
+        this.viewBudgetService = viewBudgetService;
         this.storageService = storageService;
         this.ipHashUtil = ipHashUtil;
     }
 
-    @Transactional
+    // Deliberately not @Transactional: no DB connection is held while the answer is being verified
     public SolveResp solve(SolveReq req, String clientIp, String solverAnonId) {
         long startTime = System.currentTimeMillis();
         
-        // Validate nonce
-        Long roomIdFromNonce = nonceService.validateAndConsumeNonce(req.getNonce());
-        if (roomIdFromNonce == null || !roomIdFromNonce.equals(req.getRoomId())) {
-            throw new NotFoundException("Invalid or expired nonce");
-        }
-
-        // Get room
-        SecretRoom room = roomRepository.findById(req.getRoomId())
-                .orElseThrow(() -> new NotFoundException("Room not found"));
+        // Hash IP
+        String ipHash = ipHashUtil.hash(clientIp);
 
-        // Check if room is active
-        if (!room.getIsActive()) {
-            throw new GoneException("Room is no longer active");
-        }
+        // Claim a verification slot before the nonce is spent: a saturated pool answers 429 and the nonce stays valid
+        RoomSnapshot room;
+        boolean isCorrect = false;
+        try (AnswerVerificationService.Reservation reservation = answerVerificationService.reserve()) {
+            // Consume nonce and read lockout state in one Redis round trip, before any DB or BCrypt work
+            SolvePreflightService.Result preflight = solvePreflightService.run(req.getNonce(), req.getRoomId(), ipHash);
+            if (!preflight.isNonceValid()) {
+                throw new NotFoundException("Invalid or expired nonce");
+            }
+            if (preflight.isLocked()) {
+                throw new LockedException("Too many failed attempts. Please try again later.", preflight.getRetryAfterSec());
+            }
 
-        // Check expiration
-        if (room.getExpiresAt() != null && room.getExpiresAt().isBefore(Instant.now())) {
-            room.setIsActive(false);
-            roomRepository.save(room);
-            throw new GoneException("Room has expired");
-        }
+            // Get room
+            room = roomCache.get(req.getRoomId())
+                    .orElseThrow(() -> new NotFoundException("Room not found"));
 
-        // Hash IP
-        String ipHash = ipHashUtil.hash(clientIp);
+            // Check if room is active
+            if (!room.getIsActive()) {
+                throw new GoneException("Room is no longer active");
+            }
 
-        // Check lockout
-        lockoutService.checkLockout(req.getRoomId(), ipHash);
+            // Check expiration
+            if (room.isExpired(Instant.now())) {
+                if (roomRepository.deactivate(room.getId()) > 0) {
+                    roomCache.invalidate(room.getId());
+                    contentVersionService.bumpFeed();
+                    trendingLeaderboard.remove(room.getId());
+                }
+                throw new GoneException("Room has expired");
+            }
 
-        // Verify answer
-        boolean isCorrect = passwordUtil.matches(req.getAnswer(), room.getAnswerHash());
+            // Verify answer, skipping BCrypt for a guess this room has recently rejected
+            String answerKey = rejectedAnswerCache.keyFor(req.getAnswer());
+            if (!rejectedAnswerCache.isKnownWrong(req.getRoomId(), answerKey)) {
+                try {
+                    isCorrect = answerVerificationService.verify(reservation, req.getAnswer(), room.getAnswerHash());
+                } catch (ServiceUnavailableException e) {
+                    // The answer was never judged: give the nonce back for the retry
+                    nonceService.restore(req.getNonce(), req.getRoomId());
+                    throw e;
+                }
+                if (!isCorrect) {
+                    rejectedAnswerCache.rememberWrong(req.getRoomId(), answerKey);
+                }
+            }
+        }
 
         // Calculate latency
         int latencyMs = (int) (System.currentTimeMillis() - startTime);
 
-        // Record attempt
+        // Record attempt (buffered; lockout decisions below rely on Redis, not on this row)
         Attempt attempt = Attempt.builder()
                 .roomId(req.getRoomId())
                 .solverAnonId(solverAnonId)
@@ -93,7 +130,9 @@ public class SolveService {
                 .ipHash(ipHash)
                 .createdAt(Instant.now())
                 .build();
-        attemptRepository.save(attempt);
+        attemptRecorder.record(attempt);
+        roomActivityCounters.record(req.getRoomId(), isCorrect);
+        trendingLeaderboard.recordAttempt(room, isCorrect);
 
         if (!isCorrect) {
             // Record failure and check for lockout
@@ -110,14 +149,18 @@ public class SolveService {
         lockoutService.clearFailureCount(req.getRoomId(), ipHash);
 
         // Apply policy
-        applyPolicy(room);
+        SolveResp.PolicyState policyState;
+        try {
+            policyState = applyPolicy(room);
+        } catch (ServiceUnavailableException e) {
+            // No view was spent: give the nonce back for the retry
+            nonceService.restore(req.getNonce(), req.getRoomId());
+            throw e;
+        }
 
         // Generate content response
         SolvedContent content = generateContent(room);
 
-        // Build policy state
-        SolveResp.PolicyState policyState = buildPolicyState(room);
-
         return SolveResp.builder()
                 .ok(true)
                 .content(content)
@@ -125,34 +168,24 @@ public class SolveService {
                 .build();
     }
 
-    private void applyPolicy(SecretRoom room) {
-        switch (room.getPolicy()) {
-            case ONCE:
-                // Mark as used up immediately
-                room.setViewsUsed(room.getViewLimit() != null ? room.getViewLimit() : 1);
-                room.setIsActive(false);
-                break;
-            case LIMITED:
-                room.setViewsUsed(room.getViewsUsed() + 1);
-                if (room.getViewLimit() != null && room.getViewsUsed() >= room.getViewLimit()) {
-                    room.setIsActive(false);
-                }
-                break;
-            case UNLIMITED:
-                // No change needed
-                break;
+    private SolveResp.PolicyState applyPolicy(RoomSnapshot room) {
+        Integer viewsUsed = room.getViewsUsed();
+        if (room.getPolicy() != SecretRoom.Policy.UNLIMITED) {
+            // ONCE/LIMITED: atomic budget decrement, so concurrent solvers cannot overspend the limit
+            viewsUsed = viewBudgetService.consume(room)
+                    .orElseThrow(() -> new GoneException("Room is no longer active"));
         }
-        roomRepository.save(room);
+        return buildPolicyState(room, viewsUsed);
     }
 
-    private SolvedContent generateContent(SecretRoom room) {
+    private SolvedContent generateContent(RoomSnapshot room) {
         if (room.getContentType() == SecretRoom.ContentType.TEXT) {
             return SolvedText.builder()
                     .type("TEXT")
                     .text(room.getContentText())
                     .build();
         } else {
-            // IMAGE - generate signed URL
+            // IMAGE - generate signed URL for the original upload; resized variants are for previews, not the reveal
             String signedUrl = storageService.generateReadUrl(room.getImageRef());
             return SolvedImage.builder()
                     .type("IMAGE")
@@ -162,10 +195,10 @@ public class SolveService {
         }
     }
 
-    private SolveResp.PolicyState buildPolicyState(SecretRoom room) {
+    private SolveResp.PolicyState buildPolicyState(RoomSnapshot room, Integer viewsUsed) {
         Integer remaining = null;
         if (room.getPolicy() == SecretRoom.Policy.LIMITED && room.getViewLimit() != null) {
-            remaining = Math.max(0, room.getViewLimit() - room.getViewsUsed());
+            remaining = Math.max(0, room.getViewLimit() - viewsUsed);
         }
 
         return SolveResp.PolicyState.builder()
@@ -176,35 +209,35 @@ public class SolveService {
                 .build();
     }
 
-    public SolveMeta getSolveMeta(Long roomId, String clientIp) {
-        SecretRoom room = roomRepository.findById(roomId)
+    public RoomSnapshot getSolvableRoom(Long roomId) {
+        RoomSnapshot room = roomCache.get(roomId)
                 .orElseThrow(() -> new NotFoundException("Room not found"));
 
         // Check if room is active
-        if (!room.getIsActive() || 
-            (room.getExpiresAt() != null && room.getExpiresAt().isBefore(Instant.now()))) {
+        if (!room.getIsActive() || room.isExpired(Instant.now())) {
             throw new GoneException("Room is no longer available");
         }
+        return room;
+    }
 
-        String ipHash = ipHashUtil.hash(clientIp);
-        
-        // Check lockout
-        boolean locked = false;
-        Integer retryAfterSec = null;
-        
+    // Seconds until this client may try again, null when it is not locked out
+    public Integer lockoutRetryAfterSec(Long roomId, String clientIp) {
         try {
-            lockoutService.checkLockout(roomId, ipHash);
+            lockoutService.checkLockout(roomId, ipHashUtil.hash(clientIp));
+            return null;
         } catch (LockedException e) {
-            locked = true;
-            retryAfterSec = e.getRetryAfterSec();
+            return e.getRetryAfterSec();
         }
+    }
 
-        // Calculate remaining
-        Integer remaining = null;
+    public Integer remainingViews(RoomSnapshot room) {
         if (room.getPolicy() == SecretRoom.Policy.LIMITED && room.getViewLimit() != null) {
-            remaining = Math.max(0, room.getViewLimit() - room.getViewsUsed());
+            return Math.max(0, room.getViewLimit() - viewBudgetService.currentViewsUsed(room));
         }
+        return null;
+    }
 
+    public SolveMeta getSolveMeta(RoomSnapshot room, Integer remaining, Integer retryAfterSec) {
         return SolveMeta.builder()
                 .id(room.getId())
                 .title(room.getTitle())
@@ -213,7 +246,7 @@ public class SolveService {
                 .remaining(remaining)
                 .limit(room.getViewLimit())
                 .expiresAt(room.getExpiresAt())
-                .locked(locked)
+                .locked(retryAfterSec != null)
                 .retryAfterSec(retryAfterSec)
                 .build();
     }
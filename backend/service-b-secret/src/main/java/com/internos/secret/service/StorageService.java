@@ -1,15 +1,24 @@
 package com.internos.secret.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URL;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -20,13 +29,29 @@ public class StorageService {
     private final Storage storage;
     private final String bucketName;
     private final int signedUrlTtlSec;
+    private final Cache<String, String> readUrlCache;
+    private final Timer signTimer;
 
     public StorageService(Storage storage,
+                         MeterRegistry meterRegistry,
                          @Value("${app.storage.bucket}") String bucketName,
-                         @Value("${app.storage.signed-url-ttl-sec}") int signedUrlTtlSec) {
+                         @Value("${app.storage.signed-url-ttl-sec}") int signedUrlTtlSec,
+                         @Value("${app.storage.signed-url-min-remaining-sec}") int minRemainingSec,
+                         @Value("${app.storage.signed-url-cache-max-size}") long cacheMaxSize) {
         this.storage = storage;
         this.bucketName = bucketName;
         this.signedUrlTtlSec = signedUrlTtlSec;
+
+        // A cached URL is handed out only while at least minRemainingSec of its lifetime is left
+        this.readUrlCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(Math.max(0, signedUrlTtlSec - minRemainingSec)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, readUrlCache, "storage.signed_urls");
+        this.signTimer = Timer.builder("storage.sign_url")
+                .description("V4 URL signing calls (may be a remote IAM call, depending on credentials)")
+                .register(meterRegistry);
     }
 
     public UploadResult generateUploadUrl(String fileName, String mimeType) {
@@ -39,13 +64,13 @@ public class StorageService {
 
         try {
             // Generate PUT signed URL for upload
-            URL signedUrl = storage.signUrl(
+            URL signedUrl = signTimer.record(() -> storage.signUrl(
                     blobInfo,
                     signedUrlTtlSec,
                     TimeUnit.SECONDS,
                     Storage.SignUrlOption.httpMethod(com.google.cloud.storage.HttpMethod.PUT),
                     Storage.SignUrlOption.withV4Signature()
-            );
+            ));
             return new UploadResult(signedUrl.toString(), fileRef);
         } catch (StorageException e) {
             log.error("Failed to generate upload signed URL", e);
@@ -72,17 +97,39 @@ public class StorageService {
     }
 
     public String generateReadUrl(String fileRef) {
+        // Concurrent requests for the same fileRef share one signing call
+        return readUrlCache.get(fileRef, this::signReadUrl);
+    }
+
+    // Signs only the refs that are not cached; duplicates and nulls are ignored
+    public Map<String, String> generateReadUrls(Collection<String> fileRefs) {
+        Set<String> refs = new LinkedHashSet<>();
+        for (String fileRef : fileRefs) {
+            if (fileRef != null && !fileRef.isEmpty()) {
+                refs.add(fileRef);
+            }
+        }
+        return readUrlCache.getAll(refs, missing -> {
+            Map<String, String> signed = new HashMap<>();
+            for (String fileRef : missing) {
+                signed.put(fileRef, signReadUrl(fileRef));
+            }
+            return signed;
+        });
+    }
+
+    private String signReadUrl(String fileRef) {
         BlobInfo blobInfo = BlobInfo.newBuilder(bucketName, fileRef).build();
 
         try {
             // Generate GET signed URL for reading
-            URL signedUrl = storage.signUrl(
+            URL signedUrl = signTimer.record(() -> storage.signUrl(
                     blobInfo,
                     signedUrlTtlSec,
                     TimeUnit.SECONDS,
                     Storage.SignUrlOption.httpMethod(com.google.cloud.storage.HttpMethod.GET),
                     Storage.SignUrlOption.withV4Signature()
-            );
+            ));
             return signedUrl.toString();
         } catch (StorageException e) {
             log.error("Failed to generate read signed URL for fileRef: {}", fileRef, e);
@@ -97,6 +144,10 @@ public class StorageService {
         return generateReadUrl(thumbRef);
     }
 
+    public Map<String, String> generateThumbnailUrls(Collection<String> thumbRefs) {
+        return generateReadUrls(thumbRefs);
+    }
+
     private String generateFileRef(String fileName) {
         // Generate unique file reference: timestamp/uuid/filename
         String timestamp = String.valueOf(System.currentTimeMillis());
@@ -0,0 +1,209 @@
+package com.internos.secret.service;
+
+import com.internos.secret.entity.SecretRoom;
+import com.internos.secret.repository.AttemptRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Cluster-wide trending ranking of public rooms: a Redis sorted set of log-space hotness scores (see HotnessScorer)
+@Service
+@Slf4j
+public class TrendingLeaderboard {
+
+    private static final String BOARD_KEY = "trending:hot";
+    private static final String SEED_LOCK_KEY = "trending:seed-lock";
+    // Linear-scale board from before scores moved to log space
+    private static final List<String> LEGACY_KEYS = List.of("trending:board", "trending:meta");
+    private static final int MAX_FETCH_ROUNDS = 3;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final AttemptRepository attemptRepository;
+    private final RoomCache roomCache;
+    private final HotnessScorer hotnessScorer;
+    private final Clock clock;
+    private final int halfLifeSec;
+    private final double correctWeight;
+    private final double attemptWeight;
+    private final double minScore;
+    private final int seedWindowSec;
+    private final DefaultRedisScript<String> incrScript;
+
+    public TrendingLeaderboard(StringRedisTemplate stringRedisTemplate,
+                               AttemptRepository attemptRepository,
+                               RoomCache roomCache,
+                               HotnessScorer hotnessScorer,
+                               Clock clock,
+                               @Value("${app.trending.half-life-sec}") int halfLifeSec,
+                               @Value("${app.trending.correct-weight}") double correctWeight,
+                               @Value("${app.trending.attempt-weight}") double attemptWeight,
+                               @Value("${app.trending.min-score}") double minScore,
+                               @Value("${app.trending.seed-window-sec}") int seedWindowSec) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.attemptRepository = attemptRepository;
+        this.roomCache = roomCache;
+        this.hotnessScorer = hotnessScorer;
+        this.clock = clock;
+        this.halfLifeSec = halfLifeSec;
+        this.correctWeight = correctWeight;
+        this.attemptWeight = attemptWeight;
+        this.minScore = minScore;
+        this.seedWindowSec = seedWindowSec;
+
+        this.incrScript = new DefaultRedisScript<>();
+        this.incrScript.setLocation(new ClassPathResource("redis/trending-incr.lua"));
+        this.incrScript.setResultType(String.class);
+    }
+
+    // Every attempt heats the room up; a correct solve counts for more than a miss
+    public void recordAttempt(RoomSnapshot room, boolean correct) {
+        if (room.getVisibility() != SecretRoom.Visibility.PUBLIC) {
+            return;
+        }
+        double weight = correct ? correctWeight : attemptWeight;
+        if (weight > 0) {
+            increment(room.getId(), hotnessScorer.logWeight(weight));
+        }
+    }
+
+    public void remove(Long roomId) {
+        try {
+            stringRedisTemplate.opsForZSet().remove(BOARD_KEY, String.valueOf(roomId));
+        } catch (Exception e) {
+            // Reads drop rooms that are no longer listable anyway
+            log.warn("Failed to remove roomId={} from trending", roomId, e);
+        }
+    }
+
+    // Ranks [offset, offset + count) among rooms that are still public, active and unexpired
+    public List<Entry> top(int offset, int count) {
+        List<Entry> entries = new ArrayList<>(count);
+        int start = offset;
+        for (int round = 0; round < MAX_FETCH_ROUNDS && entries.size() < count; round++) {
+            int fetch = (count - entries.size()) * 2;
+            Set<ZSetOperations.TypedTuple<String>> range = stringRedisTemplate.opsForZSet()
+                    .reverseRangeWithScores(BOARD_KEY, start, start + fetch - 1);
+            if (range == null || range.isEmpty()) {
+                break;
+            }
+
+            List<Long> ids = new ArrayList<>(range.size());
+            List<Double> logScores = new ArrayList<>(range.size());
+            for (ZSetOperations.TypedTuple<String> tuple : range) {
+                ids.add(Long.valueOf(tuple.getValue()));
+                logScores.add(tuple.getScore());
+            }
+
+            Map<Long, RoomSnapshot> rooms = roomCache.getAll(ids);
+            Instant now = clock.instant();
+            int removed = 0;
+            for (int i = 0; i < ids.size() && entries.size() < count; i++) {
+                RoomSnapshot room = rooms.get(ids.get(i));
+                if (room == null || !room.isListable(now)) {
+                    // Expired or hidden without an explicit removal: clean up lazily
+                    remove(ids.get(i));
+                    removed++;
+                    continue;
+                }
+                // The stored log score is time-invariant, so it doubles as a stable rank key
+                entries.add(new Entry(room, hotnessScorer.score(logScores.get(i)), logScores.get(i)));
+            }
+            if (ids.size() < fetch) {
+                break;
+            }
+            // Removed members shifted the ranks behind them
+            start += fetch - removed;
+        }
+        return entries;
+    }
+
+    // Scores never shrink in storage, so rooms that have cooled below min-score are trimmed periodically
+    @Scheduled(fixedDelayString = "${app.trending.prune-interval-ms}")
+    public void prune() {
+        try {
+            Long removed = stringRedisTemplate.opsForZSet()
+                    .removeRangeByScore(BOARD_KEY, Double.NEGATIVE_INFINITY, hotnessScorer.logThreshold(minScore));
+            if (removed != null && removed > 0) {
+                log.debug("Pruned {} cooled rooms from trending", removed);
+            }
+        } catch (Exception e) {
+            log.error("Trending leaderboard prune failed", e);
+        }
+    }
+
+    // A fresh Redis starts from the last seed window of attempts; one node does the work
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedIfEmpty() {
+        try {
+            Long size = stringRedisTemplate.opsForZSet().zCard(BOARD_KEY);
+            if (size != null && size > 0) {
+                return;
+            }
+            if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                    .setIfAbsent(SEED_LOCK_KEY, "1", Duration.ofSeconds(seedWindowSec)))) {
+                return;
+            }
+            stringRedisTemplate.delete(LEGACY_KEYS);
+            Instant now = clock.instant();
+            List<AttemptRepository.RoomScore> scores = attemptRepository.findDecayedScoresSince(
+                    now.minusSeconds(seedWindowSec), now, halfLifeSec, correctWeight, attemptWeight);
+            for (AttemptRepository.RoomScore score : scores) {
+                if (score.getScore() != null && score.getScore() > 0) {
+                    increment(score.getRoomId(), hotnessScorer.logWeight(score.getScore(), now));
+                }
+            }
+            log.info("Seeded trending leaderboard with {} rooms", scores.size());
+        } catch (Exception e) {
+            log.error("Trending leaderboard seeding failed", e);
+        }
+    }
+
+    private void increment(Long roomId, double logWeight) {
+        try {
+            stringRedisTemplate.execute(incrScript, List.of(BOARD_KEY),
+                    String.valueOf(roomId), String.valueOf(logWeight));
+        } catch (Exception e) {
+            // Ranking is best effort; never fail a solve over it
+            log.warn("Failed to update trending score for roomId={}", roomId, e);
+        }
+    }
+
+    public static class Entry {
+        private final RoomSnapshot room;
+        private final double score;
+        private final double rankKey;
+
+        public Entry(RoomSnapshot room, double score, double rankKey) {
+            this.room = room;
+            this.score = score;
+            this.rankKey = rankKey;
+        }
+
+        public RoomSnapshot getRoom() {
+            return room;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public double getRankKey() {
+            return rankKey;
+        }
+    }
+}
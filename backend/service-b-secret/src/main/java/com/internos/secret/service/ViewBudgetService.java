@@ -0,0 +1,276 @@
+package com.internos.secret.service;
+
+import com.internos.secret.entity.SecretRoom;
+import com.internos.secret.exception.ServiceUnavailableException;
+import com.internos.secret.repository.SecretRoomRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class ViewBudgetService {
+
+    private static final String VIEWS_USED_PREFIX = "room:views:";
+    // Written once and never expires: if it is gone, Redis lost its data along with the counters
+    private static final String EPOCH_KEY = "room:views-epoch";
+    // Lives for one settle period after a loss is detected; no counter is seeded while it exists
+    private static final String SETTLE_KEY = "room:views-settle";
+    private static final long NOT_SEEDED = -2L;
+
+    // views_used only ever moves forward, and is_active flips off once the limit is reached
+    private static final String FLUSH_SQL =
+            "UPDATE secret_room SET views_used = ?, " +
+            "is_active = is_active AND ? < (CASE WHEN policy = 'ONCE' THEN 1 ELSE view_limit END) " +
+            "WHERE id = ? AND views_used < ?";
+
+    private final SecretRoomRepository roomRepository;
+    private final RoomCache roomCache;
+    private final ContentVersionService contentVersionService;
+    private final TrendingLeaderboard trendingLeaderboard;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean redisBacked;
+    private final Duration keyTtl;
+    private final Duration reseedSettle;
+    private final DefaultRedisScript<Long> consumeScript;
+    private final Map<Long, Integer> pendingFlush = new ConcurrentHashMap<>();
+    private volatile String knownEpoch;
+    private final Timer flushTimer;
+    private final Counter flushedRooms;
+
+    public ViewBudgetService(SecretRoomRepository roomRepository,
+                             RoomCache roomCache,
+                             ContentVersionService contentVersionService,
+                             TrendingLeaderboard trendingLeaderboard,
+                             StringRedisTemplate stringRedisTemplate,
+                             JdbcTemplate jdbcTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.solve.view-budget.store}") String store,
+                             @Value("${app.solve.view-budget.key-ttl-sec}") int keyTtlSec,
+                             @Value("${app.solve.view-budget.flush-interval-ms}") long flushIntervalMs) {
+        this.roomRepository = roomRepository;
+        this.roomCache = roomCache;
+        this.contentVersionService = contentVersionService;
+        this.trendingLeaderboard = trendingLeaderboard;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisBacked = "redis".equalsIgnoreCase(store);
+        this.keyTtl = Duration.ofSeconds(keyTtlSec);
+        // Long enough for every node to complete at least one scheduled flush
+        this.reseedSettle = Duration.ofMillis(2 * flushIntervalMs);
+
+        this.consumeScript = new DefaultRedisScript<>();
+        this.consumeScript.setLocation(new ClassPathResource("redis/view-budget-consume.lua"));
+        this.consumeScript.setResultType(Long.class);
+
+        this.flushTimer = Timer.builder("room.view_budget.flush")
+                .description("Time spent writing consumed views back to Postgres")
+                .register(meterRegistry);
+        this.flushedRooms = Counter.builder("room.view_budget.flushed_rooms")
+                .description("Rooms whose views_used was written back in a flush batch")
+                .register(meterRegistry);
+    }
+
+    // Takes one view of a ONCE/LIMITED room; empty means the budget was already spent
+    public Optional<Integer> consume(RoomSnapshot room) {
+        if (!redisBacked) {
+            Optional<SecretRoomRepository.ViewConsumption> consumed = roomRepository.consumeView(room.getId());
+            // The row changed either way (or was already spent): cached snapshots are stale
+            roomCache.invalidate(room.getId());
+            if (consumed.isEmpty() || Boolean.FALSE.equals(consumed.get().getIsActive())) {
+                // Budget spent: the room leaves the public feeds
+                contentVersionService.bumpFeed();
+                trendingLeaderboard.remove(room.getId());
+            }
+            return consumed.map(SecretRoomRepository.ViewConsumption::getViewsUsed);
+        }
+
+        String key = VIEWS_USED_PREFIX + room.getId();
+        int limit = limitOf(room);
+
+        Long result = runConsume(key, limit);
+        if (result != null && result == NOT_SEEDED) {
+            long settleMs = seed(room.getId(), key);
+            if (settleMs > 0) {
+                // Nothing waits on this thread; the client retries once the other nodes have flushed
+                throw new ServiceUnavailableException("View budget is being rebuilt",
+                        (int) Math.max(1, (settleMs + 999) / 1000));
+            }
+            result = runConsume(key, limit);
+        }
+        if (result == null || result < 0) {
+            return Optional.empty();
+        }
+
+        int viewsUsed = result.intValue();
+        pendingFlush.merge(room.getId(), viewsUsed, Math::max);
+        if (viewsUsed >= limit) {
+            roomCache.invalidate(room.getId());
+            contentVersionService.bumpFeed();
+            trendingLeaderboard.remove(room.getId());
+        }
+        return Optional.of(viewsUsed);
+    }
+
+    // Called when a room is created or edited, so its first solve finds the counter in place
+    public void prime(SecretRoom room) {
+        if (!redisBacked || room.getPolicy() == SecretRoom.Policy.UNLIMITED) {
+            return;
+        }
+        try {
+            seed(room.getId(), VIEWS_USED_PREFIX + room.getId());
+        } catch (Exception e) {
+            // The first solve seeds it instead
+            log.warn("Failed to prime view budget for roomId={}", room.getId(), e);
+        }
+    }
+
+    public int currentViewsUsed(RoomSnapshot room) {
+        if (!redisBacked || room.getPolicy() == SecretRoom.Policy.UNLIMITED) {
+            return room.getViewsUsed();
+        }
+        String value = stringRedisTemplate.opsForValue().get(VIEWS_USED_PREFIX + room.getId());
+        return value != null ? Math.max(room.getViewsUsed(), Integer.parseInt(value)) : room.getViewsUsed();
+    }
+
+    @Scheduled(fixedDelayString = "${app.solve.view-budget.flush-interval-ms}")
+    public void flush() {
+        if (pendingFlush.isEmpty()) {
+            return;
+        }
+
+        // Coalesce: each room is written once per batch with its highest count
+        Map<Long, Integer> batch = new HashMap<>(pendingFlush);
+        List<Object[]> args = new ArrayList<>(batch.size());
+        batch.forEach((roomId, viewsUsed) -> args.add(new Object[]{viewsUsed, viewsUsed, roomId, viewsUsed}));
+
+        try {
+            flushTimer.record(() -> jdbcTemplate.batchUpdate(FLUSH_SQL, args));
+            batch.forEach(pendingFlush::remove);
+            flushedRooms.increment(batch.size());
+            // views_used / is_active moved in Postgres; refresh cached snapshots
+            batch.keySet().forEach(roomCache::invalidate);
+        } catch (DataAccessException e) {
+            log.error("Failed to flush view budgets for {} rooms, will retry", batch.size(), e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (!redisBacked) {
+            return;
+        }
+        try {
+            // Counters left behind by a node that stopped before flushing
+            List<String> keys = scanKeys(VIEWS_USED_PREFIX + "*");
+            if (keys.isEmpty()) {
+                return;
+            }
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+            for (int i = 0; i < keys.size(); i++) {
+                String value = values != null ? values.get(i) : null;
+                if (value != null) {
+                    Long roomId = Long.valueOf(keys.get(i).substring(VIEWS_USED_PREFIX.length()));
+                    pendingFlush.merge(roomId, Integer.parseInt(value), Math::max);
+                }
+            }
+            flush();
+            log.info("Reconciled {} view budget counters from Redis", keys.size());
+        } catch (Exception e) {
+            log.error("View budget reconciliation failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private Long runConsume(String key, int limit) {
+        return stringRedisTemplate.execute(consumeScript, List.of(key),
+                String.valueOf(limit), String.valueOf(keyTtl.getSeconds()));
+    }
+
+    // Seeds a missing counter from max(Postgres, pending) right away, unless a Redis data loss was just detected;
+    // returns how long seeding is still held back (0 once the counter is in place)
+    private long seed(Long roomId, String key) {
+        long settleMs = lossSettleMillis();
+        if (settleMs > 0) {
+            return settleMs;
+        }
+        int fromDb = roomRepository.findViewsUsedById(roomId).orElse(0);
+        int seedValue = Math.max(fromDb, pendingFlush.getOrDefault(roomId, 0));
+        stringRedisTemplate.opsForValue().setIfAbsent(key, String.valueOf(seedValue), keyTtl);
+        return 0L;
+    }
+
+    // A key that merely hit its TTL was idle far longer than a flush interval, so Postgres is current. After a data
+    // loss, other nodes may still hold counts taken from the lost keys: the node that re-creates the epoch holds
+    // seeding back until every node has run its scheduled flush
+    private long lossSettleMillis() {
+        ValueOperations<String, String> ops = stringRedisTemplate.opsForValue();
+        String epoch = ops.get(EPOCH_KEY);
+        if (epoch == null) {
+            if (Boolean.TRUE.equals(ops.setIfAbsent(EPOCH_KEY, UUID.randomUUID().toString()))) {
+                ops.set(SETTLE_KEY, "1", reseedSettle);
+                log.warn("View budget epoch missing: Redis lost its data, holding counter seeding for {} ms",
+                        reseedSettle.toMillis());
+            }
+            epoch = ops.get(EPOCH_KEY);
+        }
+        if (!Objects.equals(epoch, knownEpoch)) {
+            // Counts this node took under the previous epoch go to Postgres now instead of on the next tick
+            flush();
+            knownEpoch = epoch;
+        }
+        Long ttl = stringRedisTemplate.getExpire(SETTLE_KEY, TimeUnit.MILLISECONDS);
+        return ttl != null && ttl > 0 ? ttl : 0L;
+    }
+
+    private int limitOf(RoomSnapshot room) {
+        if (room.getPolicy() == SecretRoom.Policy.ONCE) {
+            return 1;
+        }
+        return room.getViewLimit() != null ? room.getViewLimit() : Integer.MAX_VALUE;
+    }
+
+    private List<String> scanKeys(String pattern) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(1000).build();
+        return stringRedisTemplate.execute((RedisCallback<List<String>>) connection -> {
+            List<String> found = new ArrayList<>();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                cursor.forEachRemaining(key -> found.add(new String(key, StandardCharsets.UTF_8)));
+            }
+            return found;
+        });
+    }
+}
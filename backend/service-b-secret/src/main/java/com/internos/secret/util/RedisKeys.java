@@ -0,0 +1,15 @@
+package com.internos.secret.util;
+
+// Redis Cluster hashes only the {...} part of a key, so keys sharing a tag land in one slot
+// and can be touched by the same script without CROSSSLOT errors
+public final class RedisKeys {
+
+    private RedisKeys() {
+    }
+
+    // Shared by every solve key of one room: nonces, replay markers and each solver's lockout state.
+    // The ip hash stays outside the tag so a nonce is not tied to the address that fetched it
+    public static String roomTag(Long roomId) {
+        return "{" + roomId + "}";
+    }
+}
@@ -0,0 +1,2 @@
+-- Supports the chunked purge of expired lockouts
+CREATE INDEX idx_lockout_until ON lockout(until);
@@ -0,0 +1,3 @@
+-- Image rooms still waiting for post-processing (read by the retry sweep)
+CREATE INDEX idx_secret_room_image_pending ON secret_room(id)
+    WHERE content_type = 'IMAGE' AND image_meta IS NULL;
@@ -0,0 +1,4 @@
+-- flyway:executeInTransaction=false
+-- Time-range scans over all rooms (trending aggregate); INCLUDE allows index-only scans.
+-- Built CONCURRENTLY so inserts into attempt keep flowing while the index builds.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_attempt_created_room ON attempt(created_at) INCLUDE (room_id, is_correct);
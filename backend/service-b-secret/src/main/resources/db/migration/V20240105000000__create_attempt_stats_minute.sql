@@ -0,0 +1,35 @@
+-- Per-room, per-minute attempt rollup maintained by AttemptRollupService
+CREATE TABLE attempt_stats_minute (
+    room_id BIGINT NOT NULL,
+    bucket TIMESTAMPTZ NOT NULL,
+    attempts INTEGER NOT NULL,
+    correct INTEGER NOT NULL,
+    latency_sum BIGINT NOT NULL,
+    PRIMARY KEY (room_id, bucket)
+);
+
+CREATE INDEX idx_attempt_stats_minute_bucket ON attempt_stats_minute(bucket) INCLUDE (room_id, attempts, correct);
+
+-- Watermark per rollup job: everything strictly before it has been aggregated
+CREATE TABLE stats_rollup_state (
+    name TEXT PRIMARY KEY,
+    watermark TIMESTAMPTZ
+);
+
+INSERT INTO stats_rollup_state (name, watermark) VALUES ('attempt_minute', NULL);
+
+-- Rolled-up minutes before the watermark plus the raw tail after it, so readers never see a gap
+CREATE VIEW attempt_stats_minute_live AS
+SELECT s.room_id, s.bucket, s.attempts, s.correct, s.latency_sum
+FROM attempt_stats_minute s
+JOIN stats_rollup_state w ON w.name = 'attempt_minute'
+WHERE s.bucket < COALESCE(w.watermark, '-infinity'::timestamptz)
+UNION ALL
+SELECT a.room_id, date_trunc('minute', a.created_at) AS bucket,
+       COUNT(*)::integer AS attempts,
+       (COUNT(*) FILTER (WHERE a.is_correct))::integer AS correct,
+       COALESCE(SUM(a.latency_ms), 0)::bigint AS latency_sum
+FROM attempt a
+JOIN stats_rollup_state w ON w.name = 'attempt_minute'
+WHERE a.created_at >= COALESCE(w.watermark, '-infinity'::timestamptz)
+GROUP BY a.room_id, date_trunc('minute', a.created_at);
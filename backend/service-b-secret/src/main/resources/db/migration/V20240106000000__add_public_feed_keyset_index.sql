@@ -0,0 +1,8 @@
+-- "new" feed keyset: (created_at, id) < (?, ?) over listable public rooms, ties broken by id.
+-- Feed cards are answered from the index alone (index-only scan); content_text, image_meta and answer_hash stay in the heap
+CREATE INDEX idx_secret_room_public_card ON secret_room(created_at DESC, id DESC)
+    INCLUDE (owner_name, title, hint, content_type)
+    WHERE visibility = 'PUBLIC' AND is_active;
+
+-- Superseded by the partial index above
+DROP INDEX IF EXISTS idx_secret_room_visibility_active_created;
@@ -0,0 +1,15 @@
+-- Smoothed difficulty per room, refreshed by the attempt rollup for rooms whose counts changed
+CREATE TABLE room_difficulty (
+    room_id BIGINT PRIMARY KEY,
+    attempts BIGINT NOT NULL,
+    correct BIGINT NOT NULL,
+    recent_attempts BIGINT NOT NULL,
+    recent_correct BIGINT NOT NULL,
+    -- 1 - Bayesian solve rate; NULL until the room has the minimum number of attempts
+    difficulty DOUBLE PRECISION,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+-- Hardest-first keyset: (-difficulty, room_id) > (?, ?) starts an index range; both columns ascend
+CREATE INDEX idx_room_difficulty_rank ON room_difficulty((-difficulty), room_id)
+    WHERE difficulty IS NOT NULL;
@@ -0,0 +1,9 @@
+-- Global attempt totals behind the difficulty prior, kept in step with room_difficulty by the rollup's deltas
+CREATE TABLE room_difficulty_totals (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    attempts BIGINT NOT NULL,
+    correct BIGINT NOT NULL
+);
+
+INSERT INTO room_difficulty_totals (id, attempts, correct)
+SELECT TRUE, COALESCE(SUM(attempts), 0), COALESCE(SUM(correct), 0) FROM room_difficulty;
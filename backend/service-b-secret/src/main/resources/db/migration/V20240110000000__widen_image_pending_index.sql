@@ -0,0 +1,5 @@
+-- Failed processing runs leave a PENDING marker with an attempt count; those rooms are still pending
+DROP INDEX IF EXISTS idx_secret_room_image_pending;
+
+CREATE INDEX idx_secret_room_image_pending ON secret_room(id)
+    WHERE content_type = 'IMAGE' AND (image_meta IS NULL OR image_meta->>'status' = 'PENDING');
@@ -0,0 +1,11 @@
+-- KEYS[1..n] = failure buckets of one (roomId, ipHash), oldest first; KEYS[n] is the current bucket
+-- ARGV[1] = bucket expiry (sec)
+-- Returns the failures summed over the whole window, including this one
+local current = KEYS[#KEYS]
+redis.call('INCR', current)
+redis.call('EXPIRE', current, ARGV[1])
+local total = 0
+for i = 1, #KEYS do
+    total = total + (tonumber(redis.call('GET', KEYS[i]) or '0') or 0)
+end
+return total
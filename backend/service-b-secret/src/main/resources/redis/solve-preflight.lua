@@ -0,0 +1,34 @@
+-- All keys carry the same {roomId} hash tag, so the script runs within one cluster slot
+-- KEYS[1] = solve nonce (redis mode) or replay marker (signed mode)
+-- KEYS[2] = lock, KEYS[3..n] = failure counter keys; both are omitted when lockout state is not kept in Redis
+-- ARGV[1] = roomId the solve is for
+-- ARGV[2] = 'consume' for stored nonces, 'claim' for signed nonces already verified by the caller
+-- ARGV[3] = replay marker ttl (ms), only used by 'claim'
+-- Returns {nonceStatus, failCount, lockTtlMs}
+-- nonceStatus: 0 = missing, expired or replayed, 1 = issued for another room, 2 = valid (and now consumed)
+if ARGV[2] == 'claim' then
+    if not redis.call('SET', KEYS[1], '1', 'NX', 'PX', ARGV[3]) then
+        return {0, 0, 0}
+    end
+else
+    local roomId = redis.call('GET', KEYS[1])
+    if not roomId then
+        return {0, 0, 0}
+    end
+    redis.call('DEL', KEYS[1])
+    if roomId ~= ARGV[1] then
+        return {1, 0, 0}
+    end
+end
+if #KEYS < 2 then
+    return {2, 0, 0}
+end
+local lockTtl = redis.call('PTTL', KEYS[2])
+if lockTtl < 0 then
+    lockTtl = 0
+end
+local fails = 0
+for i = 3, #KEYS do
+    fails = fails + (tonumber(redis.call('GET', KEYS[i]) or '0') or 0)
+end
+return {2, fails, lockTtl}
@@ -0,0 +1,14 @@
+-- KEYS[1] = trending leaderboard (zset of log-space hotness scores)
+-- ARGV[1] = room id, ARGV[2] = log weight of the event (ln w + t * ln2 / half-life)
+-- logaddexp(current, weight) in one step; stored scores never decay, so nothing is ever rescored
+local add = tonumber(ARGV[2])
+local current = redis.call('ZSCORE', KEYS[1], ARGV[1])
+local score = add
+if current then
+    local c = tonumber(current)
+    local hi = math.max(c, add)
+    local lo = math.min(c, add)
+    score = hi + math.log(1 + math.exp(lo - hi))
+end
+redis.call('ZADD', KEYS[1], string.format('%.17g', score), ARGV[1])
+return string.format('%.17g', score)
@@ -0,0 +1,13 @@
+-- KEYS[1] = views-used counter of a room
+-- ARGV[1] = view limit, ARGV[2] = key ttl (sec)
+-- Returns the new used count, -1 when the budget is spent, -2 when the counter is not seeded
+local used = redis.call('GET', KEYS[1])
+if not used then
+    return -2
+end
+if tonumber(used) >= tonumber(ARGV[1]) then
+    return -1
+end
+used = redis.call('INCR', KEYS[1])
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+return used
@@ -0,0 +1,43 @@
+package com.internos.secret;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Runs the same call many times from a thread pool, released together so they race on the same row / key
+public final class Concurrency {
+
+    private Concurrency() {
+    }
+
+    public static <T> List<T> race(int threads, int calls, Callable<T> call) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>(calls);
+            for (int i = 0; i < calls; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return call.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>(calls);
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public static int countSuccesses(int threads, int calls, Callable<Boolean> call) throws Exception {
+        return (int) race(threads, calls, call).stream().filter(Boolean::booleanValue).count();
+    }
+}
@@ -0,0 +1,53 @@
+package com.internos.secret;
+
+import com.google.cloud.storage.Storage;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Full application context against throwaway Postgres and Redis; containers are shared by every test class.
+// Without Docker every subclass is skipped rather than failed.
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class IntegrationTestSupport {
+
+    protected static final PostgreSQLContainer<?> POSTGRES =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:16-alpine"));
+    protected static final GenericContainer<?> REDIS =
+            new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+    // Started once here rather than as @Container fields, which would restart them for every test class
+    // while Spring keeps the cached context pointing at the old ports
+    static {
+        if (DockerClientFactory.instance().isDockerAvailable()) {
+            POSTGRES.start();
+            REDIS.start();
+        }
+    }
+
+    // No GCS in tests: blobs go to a temp directory
+    @MockBean
+    protected Storage storage;
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) throws Exception {
+        Path blobDir = Files.createTempDirectory("blobs");
+        // Lets rows saved through JPA bind their enum columns to the Postgres enum types
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl() + "&stringtype=unspecified");
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.data.redis.host", REDIS::getHost);
+        registry.add("spring.data.redis.port", () -> REDIS.getMappedPort(6379));
+        registry.add("app.storage.blob-store", () -> "local");
+        registry.add("app.storage.local-dir", blobDir::toString);
+    }
+}
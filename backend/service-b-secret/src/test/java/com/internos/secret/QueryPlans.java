@@ -0,0 +1,25 @@
+package com.internos.secret;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+
+// EXPLAIN for a repository's native @Query, so plan assertions always run the SQL the application runs
+public final class QueryPlans {
+
+    private QueryPlans() {
+    }
+
+    public static String explain(NamedParameterJdbcTemplate jdbcTemplate, Class<?> repository, String methodName,
+                                 Map<String, ?> params) {
+        Method method = Arrays.stream(repository.getMethods())
+                .filter(m -> m.getName().equals(methodName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No method " + methodName));
+        String sql = method.getAnnotation(Query.class).value();
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN (ANALYZE, COSTS OFF) " + sql, params, String.class));
+    }
+}
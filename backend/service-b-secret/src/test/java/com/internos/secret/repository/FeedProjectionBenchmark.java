@@ -0,0 +1,90 @@
+package com.internos.secret.repository;
+
+import com.internos.secret.IntegrationTestSupport;
+import com.internos.secret.entity.SecretRoom;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// One "new" feed page read as full SecretRoom entities (the previous query) against the card projection:
+// bytes Postgres returns per page and bytes this thread allocates per request.
+// Run with ./gradlew benchmark
+@Tag("benchmark")
+class FeedProjectionBenchmark extends IntegrationTestSupport {
+
+    private static final long OWNER_ID = -23L;
+    private static final int ROOMS = 5_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2_000;
+
+    private static final String ENTITY_PAGE_JPQL =
+            "SELECT sr FROM SecretRoom sr WHERE sr.visibility = 'PUBLIC' AND sr.isActive = true " +
+            "ORDER BY sr.createdAt DESC, sr.id DESC";
+    private static final String PAGE_BYTES_SQL =
+            "SELECT SUM(pg_column_size(t.*)) FROM (SELECT %s FROM secret_room WHERE visibility = 'PUBLIC' AND is_active " +
+            "ORDER BY created_at DESC, id DESC LIMIT " + PAGE_SIZE + ") t";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private SecretRoomRepository roomRepository;
+
+    // Rooms with a realistic secret and image metadata, which the card never shows
+    @BeforeEach
+    void publicRooms() {
+        jdbcTemplate.update("INSERT INTO secret_room (owner_id, owner_name, title, hint, answer_hash, content_type, " +
+                "content_text, image_meta, visibility, policy, created_at) SELECT ?, 'owner', 'title ' || g, 'hint ' || g, " +
+                "'hash', CAST('TEXT' AS content_type), " +
+                "repeat('secret ', 600), CAST('{\"status\":\"READY\",\"w\":1920,\"h\":1080}' AS jsonb), " +
+                "CAST('PUBLIC' AS visibility_type), CAST('UNLIMITED' AS policy_type), NOW() - g * INTERVAL '1 second' " +
+                "FROM generate_series(1, ?) g", OWNER_ID, ROOMS);
+        jdbcTemplate.execute("VACUUM ANALYZE secret_room");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM secret_room WHERE owner_id = ?", OWNER_ID);
+    }
+
+    @Test
+    void cardProjectionAgainstEntityPage() {
+        long entityBytes = jdbcTemplate.queryForObject(String.format(PAGE_BYTES_SQL, "*"), Long.class);
+        long cardBytes = jdbcTemplate.queryForObject(String.format(PAGE_BYTES_SQL,
+                "id, owner_name, title, hint, content_type, created_at"), Long.class);
+
+        long entityHeap = allocatedPerCall(() -> entityManager.createQuery(ENTITY_PAGE_JPQL, SecretRoom.class)
+                .setMaxResults(PAGE_SIZE).getResultList().size());
+        long cardHeap = allocatedPerCall(() -> roomRepository.findPublicCardsFirstPage(PAGE_SIZE).size());
+
+        System.out.printf("%-18s bytes/page=%8d  heap/request=%8d%n", "entity page", entityBytes, entityHeap);
+        System.out.printf("%-18s bytes/page=%8d  heap/request=%8d%n", "card projection", cardBytes, cardHeap);
+        assertThat(cardBytes).isLessThan(entityBytes);
+    }
+
+    // Mean bytes allocated by this thread per call
+    private static long allocatedPerCall(Supplier<Integer> page) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            assertThat(page.get()).isEqualTo(PAGE_SIZE);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            page.get();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / ITERATIONS;
+    }
+}
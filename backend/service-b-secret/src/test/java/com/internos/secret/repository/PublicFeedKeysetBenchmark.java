@@ -0,0 +1,104 @@
+package com.internos.secret.repository;
+
+import com.internos.secret.IntegrationTestSupport;
+import com.internos.secret.QueryPlans;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// "new" feed: page 1 against page 10,000 of the (created_at, id) keyset. Both should be one short range scan
+// of idx_secret_room_public_card, so their latencies should match.
+// Run with ./gradlew benchmark
+@Tag("benchmark")
+class PublicFeedKeysetBenchmark extends IntegrationTestSupport {
+
+    private static final long OWNER_ID = -22L;
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGE = 10_000;
+    private static final int ROOMS = PAGE_SIZE * DEEP_PAGE + 10_000;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private SecretRoomRepository roomRepository;
+
+    @BeforeEach
+    void publicRooms() {
+        jdbcTemplate.update("INSERT INTO secret_room (owner_id, owner_name, title, hint, answer_hash, content_type, " +
+                "content_text, visibility, policy, created_at) SELECT ?, 'owner', 'title', 'hint', 'hash', " +
+                "CAST('TEXT' AS content_type), 'secret', CAST('PUBLIC' AS visibility_type), " +
+                "CAST('UNLIMITED' AS policy_type), NOW() - g * INTERVAL '1 second' FROM generate_series(1, ?) g",
+                OWNER_ID, ROOMS);
+        jdbcTemplate.execute("VACUUM ANALYZE secret_room");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM secret_room WHERE owner_id = ?", OWNER_ID);
+    }
+
+    @Test
+    void deepPageCostsTheSameAsTheFirst() {
+        // Cursor of the last row on page DEEP_PAGE - 1, i.e. the request for page DEEP_PAGE
+        Map<String, Object> cursor = jdbcTemplate.queryForMap("SELECT created_at, id FROM secret_room " +
+                "WHERE visibility = 'PUBLIC' AND is_active ORDER BY created_at DESC, id DESC OFFSET ? LIMIT 1",
+                PAGE_SIZE * (DEEP_PAGE - 1) - 1);
+        Instant createdAt = ((Timestamp) cursor.get("created_at")).toInstant();
+        Long id = ((Number) cursor.get("id")).longValue();
+
+        String plan = QueryPlans.explain(namedParameterJdbcTemplate, SecretRoomRepository.class, "findPublicCardsAfter",
+                Map.of("createdAt", Timestamp.from(createdAt), "id", id, "limit", PAGE_SIZE));
+        assertThat(plan).contains("idx_secret_room_public_card").contains("Index Cond");
+
+        long[] first = measure(() -> roomRepository.findPublicCardsFirstPage(PAGE_SIZE).size());
+        long[] deep = measure(() -> roomRepository.findPublicCardsAfter(createdAt, id, PAGE_SIZE).size());
+
+        report("page 1", first);
+        report("page " + DEEP_PAGE, deep);
+        assertThat(percentile(deep, 50)).isPositive();
+    }
+
+    private static long[] measure(Supplier<Integer> page) {
+        for (int i = 0; i < WARMUP; i++) {
+            assertThat(page.get()).isEqualTo(PAGE_SIZE);
+        }
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long started = System.nanoTime();
+            int rows = page.get();
+            nanos[i] = System.nanoTime() - started;
+            assertThat(rows).isEqualTo(PAGE_SIZE);
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String name, long[] sortedNanos) {
+        System.out.printf("%-12s p50=%7.1f us  p90=%7.1f us  p99=%7.1f us%n", name,
+                percentile(sortedNanos, 50) / 1000.0, percentile(sortedNanos, 90) / 1000.0,
+                percentile(sortedNanos, 99) / 1000.0);
+    }
+
+    private static long percentile(long[] sortedNanos, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)];
+    }
+}
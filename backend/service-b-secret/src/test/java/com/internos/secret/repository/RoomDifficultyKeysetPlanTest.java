@@ -0,0 +1,59 @@
+package com.internos.secret.repository;
+
+import com.internos.secret.IntegrationTestSupport;
+import com.internos.secret.QueryPlans;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A deep sort=hard cursor must start an index range, not scan from the hardest room and filter its way down
+class RoomDifficultyKeysetPlanTest extends IntegrationTestSupport {
+
+    private static final long OWNER_ID = -25L;
+    private static final int ROOMS = 50_000;
+    private static final int DEEP_OFFSET = 45_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @BeforeEach
+    void rankedRooms() {
+        jdbcTemplate.update("INSERT INTO secret_room (owner_id, owner_name, title, hint, answer_hash, content_type, " +
+                "content_text, visibility, policy) SELECT ?, 'owner', 'title', 'hint', 'hash', CAST('TEXT' AS content_type), " +
+                "'secret', CAST('PUBLIC' AS visibility_type), CAST('UNLIMITED' AS policy_type) FROM generate_series(1, ?)",
+                OWNER_ID, ROOMS);
+        jdbcTemplate.update("INSERT INTO room_difficulty (room_id, attempts, correct, recent_attempts, recent_correct, " +
+                "difficulty) SELECT id, 10, 5, 0, 0, random() FROM secret_room WHERE owner_id = ?", OWNER_ID);
+        jdbcTemplate.execute("ANALYZE secret_room");
+        jdbcTemplate.execute("ANALYZE room_difficulty");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM room_difficulty WHERE room_id IN (SELECT id FROM secret_room WHERE owner_id = ?)", OWNER_ID);
+        jdbcTemplate.update("DELETE FROM secret_room WHERE owner_id = ?", OWNER_ID);
+    }
+
+    @Test
+    void deepCursorStartsAnIndexRange() {
+        Map<String, Object> cursor = jdbcTemplate.queryForMap("SELECT difficulty, room_id FROM room_difficulty " +
+                "WHERE difficulty IS NOT NULL ORDER BY -difficulty, room_id OFFSET ? LIMIT 1", DEEP_OFFSET);
+
+        String plan = QueryPlans.explain(namedParameterJdbcTemplate, RoomDifficultyRepository.class, "findHardestAfter",
+                Map.of("difficulty", cursor.get("difficulty"), "roomId", cursor.get("room_id"), "limit", 20));
+
+        assertThat(plan).contains("idx_room_difficulty_rank").contains("Index Cond");
+        // Rows above the cursor are never visited, so no rank-order row is removed by a filter
+        assertThat(plan).doesNotContainPattern("Rows Removed by Filter: [1-9]\\d{3,}");
+    }
+}
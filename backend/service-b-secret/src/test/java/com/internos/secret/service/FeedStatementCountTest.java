@@ -0,0 +1,122 @@
+package com.internos.secret.service;
+
+import com.internos.secret.IntegrationTestSupport;
+import com.internos.secret.controller.RankController;
+import com.internos.secret.entity.SecretRoom;
+import com.internos.secret.repository.SecretRoomRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Card stats come from in-memory counters and one batched difficulty lookup, so a page costs the same
+// number of statements whatever its size
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // Rebuilt explicitly below; a scheduled rebuild would add its own statements to the count
+        "app.ranking.refresh-interval-ms=3600000"
+})
+class FeedStatementCountTest extends IntegrationTestSupport {
+
+    private static final int ROOMS = 60;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private RankController rankController;
+
+    @Autowired
+    private SecretRoomRepository roomRepository;
+
+    @Autowired
+    private TrendingLeaderboard trendingLeaderboard;
+
+    @Autowired
+    private RankingSnapshotService rankingSnapshotService;
+
+    @Autowired
+    private RoomCache roomCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // Every room seeded so far, so evictions also cover rooms from earlier tests
+    private static final List<Long> ROOM_IDS = new ArrayList<>();
+
+    @BeforeEach
+    void seedRooms() {
+        for (int i = 0; i < ROOMS; i++) {
+            SecretRoom room = roomRepository.save(SecretRoom.builder()
+                    .ownerId(1L)
+                    .ownerName("owner")
+                    .title("room " + i)
+                    .hint("hint")
+                    .answerHash("hash")
+                    .contentType(SecretRoom.ContentType.TEXT)
+                    .contentText("secret")
+                    .visibility(SecretRoom.Visibility.PUBLIC)
+                    .policy(SecretRoom.Policy.UNLIMITED)
+                    .build());
+            ROOM_IDS.add(room.getId());
+            jdbcTemplate.update("INSERT INTO room_difficulty (room_id, attempts, correct, recent_attempts, recent_correct, difficulty) " +
+                    "VALUES (?, 20, 5, 4, 1, 0.7)", room.getId());
+            trendingLeaderboard.recordAttempt(RoomSnapshot.from(room), true);
+        }
+        rankingSnapshotService.rebuild();
+    }
+
+    @Test
+    void newFeedPageIsConstantInStatements() {
+        long small = statementsDuring(() -> roomService.getPublicRooms("new", 5, null));
+        long large = statementsDuring(() -> roomService.getPublicRooms("new", 50, null));
+
+        // Card keyset page + one difficulty batch
+        assertThat(large).isEqualTo(small).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void trendingFeedPageIsConstantInStatements() {
+        evictRooms();
+        long small = statementsDuring(() -> roomService.getPublicRooms("trending", 5, null));
+        evictRooms();
+        long large = statementsDuring(() -> roomService.getPublicRooms("trending", 50, null));
+
+        // Cold room cache: one findAllById for the page + one difficulty batch
+        assertThat(large).isEqualTo(small).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void rankTrendingIsConstantInStatements() {
+        evictRooms();
+        long small = statementsDuring(() -> rankController.getTrending(5, null));
+        evictRooms();
+        long large = statementsDuring(() -> rankController.getTrending(100, null));
+
+        // 1h stats come from the in-memory counters: at most the room cache batch load
+        assertThat(large).isEqualTo(small).isLessThanOrEqualTo(1);
+    }
+
+    private void evictRooms() {
+        ROOM_IDS.forEach(roomCache::invalidate);
+    }
+
+    private long statementsDuring(Runnable call) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        call.run();
+        return statistics.getPrepareStatementCount();
+    }
+}
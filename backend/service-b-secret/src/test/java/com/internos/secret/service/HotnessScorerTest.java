@@ -0,0 +1,79 @@
+package com.internos.secret.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HotnessScorerTest {
+
+    private static final int HALF_LIFE_SEC = 3600;
+    private static final double EPSILON = 1e-9;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-10T00:00:00Z"));
+    private final HotnessScorer scorer = new HotnessScorer(clock, HALF_LIFE_SEC);
+
+    @Test
+    void scoreHalvesEveryHalfLife() {
+        double logScore = scorer.logWeight(8.0);
+        assertThat(scorer.score(logScore)).isCloseTo(8.0, within(EPSILON));
+
+        clock.advance(Duration.ofSeconds(HALF_LIFE_SEC));
+        assertThat(scorer.score(logScore)).isCloseTo(4.0, within(EPSILON));
+
+        clock.advance(Duration.ofSeconds(2L * HALF_LIFE_SEC));
+        assertThat(scorer.score(logScore)).isCloseTo(1.0, within(EPSILON));
+    }
+
+    @Test
+    void addingEventsSumsTheirDecayedWeights() {
+        double logScore = scorer.add(Double.NEGATIVE_INFINITY, scorer.logWeight(1.0));
+        clock.advance(Duration.ofSeconds(HALF_LIFE_SEC));
+        logScore = scorer.add(logScore, scorer.logWeight(0.2));
+
+        // The first event has decayed to 0.5, the second is fresh
+        assertThat(scorer.score(logScore)).isCloseTo(0.7, within(EPSILON));
+
+        clock.advance(Duration.ofSeconds(HALF_LIFE_SEC));
+        assertThat(scorer.score(logScore)).isCloseTo(0.35, within(EPSILON));
+    }
+
+    @Test
+    void addingIsOrderIndependent() {
+        double a = scorer.logWeight(1.0, clock.instant());
+        double b = scorer.logWeight(0.2, clock.instant().plusSeconds(600));
+
+        assertThat(scorer.add(scorer.add(Double.NEGATIVE_INFINITY, a), b))
+                .isCloseTo(scorer.add(scorer.add(Double.NEGATIVE_INFINITY, b), a), within(EPSILON));
+    }
+
+    @Test
+    void logAddExpStaysFiniteForLargeExponents() {
+        // Log-space scores grow by ln2 per half-life; exp() of them would overflow long before this
+        double large = 1_000_000.0;
+
+        assertThat(HotnessScorer.logAddExp(large, large)).isCloseTo(large + Math.log(2), within(EPSILON));
+        assertThat(HotnessScorer.logAddExp(Double.NEGATIVE_INFINITY, large)).isEqualTo(large);
+        assertThat(HotnessScorer.logAddExp(large, Double.NEGATIVE_INFINITY)).isEqualTo(large);
+    }
+
+    @Test
+    void logThresholdMarksTheMinimumScoreNow() {
+        double minScore = 0.001;
+        double threshold = scorer.logThreshold(minScore);
+
+        assertThat(scorer.score(threshold)).isCloseTo(minScore, within(EPSILON));
+        // An event just at the threshold falls below the next threshold as soon as time moves on
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(threshold).isLessThan(scorer.logThreshold(minScore));
+    }
+
+    @Test
+    void rejectsNonPositiveHalfLife() {
+        assertThatThrownBy(() -> new HotnessScorer(clock, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
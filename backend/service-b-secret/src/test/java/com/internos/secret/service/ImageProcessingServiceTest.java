@@ -0,0 +1,163 @@
+package com.internos.secret.service;
+
+import com.internos.secret.IntegrationTestSupport;
+import com.internos.secret.entity.SecretRoom;
+import com.internos.secret.repository.SecretRoomRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+        "app.image.variant-widths=1600,960,480",
+        "app.image.thumb-width=320",
+        "app.image.max-pixels=4000000",
+        "app.image.max-attempts=3"
+})
+class ImageProcessingServiceTest extends IntegrationTestSupport {
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private SecretRoomRepository roomRepository;
+
+    @Test
+    void writesEveryVariantNarrowerThanTheSourceAndAThumbnail() throws Exception {
+        SecretRoom room = saveImageRoom(uploadPng(2400, 1200));
+
+        imageProcessingService.process(room.getId(), room.getImageRef());
+
+        Map<String, Object> meta = imageMeta(room);
+        assertThat(meta).containsEntry("width", 2400).containsEntry("height", 1200);
+        assertThat(variantWidths(meta)).containsExactly(1600, 960, 480);
+        assertThat(meta).containsEntry("thumb_width", 320).containsEntry("thumb_height", 160);
+        for (Map<String, Object> variant : variants(meta)) {
+            assertThat(readImage(variant.get("ref").toString()).getWidth()).isEqualTo(variant.get("width"));
+        }
+        assertThat(readImage(meta.get("thumb_ref").toString()).getWidth()).isEqualTo(320);
+    }
+
+    @Test
+    void neverUpscalesASmallSource() throws Exception {
+        SecretRoom room = saveImageRoom(uploadPng(700, 350));
+
+        imageProcessingService.process(room.getId(), room.getImageRef());
+
+        // Wider variants collapse into one at the source width
+        assertThat(variantWidths(imageMeta(room))).containsExactly(700, 480);
+    }
+
+    @Test
+    void marksImagesAboveMaxPixelsFailedWithoutDecoding() throws Exception {
+        SecretRoom room = saveImageRoom(uploadPng(2500, 2000));
+
+        imageProcessingService.process(room.getId(), room.getImageRef());
+
+        Map<String, Object> meta = imageMeta(room);
+        assertThat(meta).containsEntry("status", "FAILED");
+        assertThat(meta.get("reason").toString()).contains("2500x2000");
+        assertThat(meta).doesNotContainKey("variants");
+    }
+
+    @Test
+    void countsTransientFailuresInTheRowAndGivesUpAtMaxAttempts() {
+        // Nothing was uploaded under this ref: every run fails to read it
+        SecretRoom room = saveImageRoom("rooms/" + UUID.randomUUID() + "/missing.png");
+
+        imageProcessingService.process(room.getId(), room.getImageRef());
+        imageProcessingService.process(room.getId(), room.getImageRef());
+        assertThat(imageMeta(room)).containsEntry("status", "PENDING").containsEntry("attempts", 2);
+
+        imageProcessingService.process(room.getId(), room.getImageRef());
+        Map<String, Object> meta = imageMeta(room);
+        assertThat(meta).containsEntry("status", "FAILED");
+        assertThat(meta.get("reason").toString()).startsWith("Gave up after 3 attempts");
+    }
+
+    @Test
+    void reRunningAProcessedImageKeepsTheFirstResult() throws Exception {
+        SecretRoom room = saveImageRoom(uploadPng(1200, 800));
+        imageProcessingService.process(room.getId(), room.getImageRef());
+        Map<String, Object> first = imageMeta(room);
+
+        imageProcessingService.process(room.getId(), room.getImageRef());
+
+        assertThat(imageMeta(room)).isEqualTo(first);
+        assertThat(readImage(first.get("thumb_ref").toString()).getWidth()).isEqualTo(320);
+    }
+
+    @Test
+    void aFailedRoomIsNotRetried() throws Exception {
+        SecretRoom room = saveImageRoom(uploadPng(2500, 2000));
+        imageProcessingService.process(room.getId(), room.getImageRef());
+        Map<String, Object> failed = imageMeta(room);
+
+        imageProcessingService.process(room.getId(), room.getImageRef());
+
+        assertThat(imageMeta(room)).isEqualTo(failed);
+    }
+
+    private String uploadPng(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y += 10) {
+            for (int x = 0; x < width; x += 10) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        String ref = "rooms/" + UUID.randomUUID() + "/original.png";
+        blobStore.write(ref, out.toByteArray(), "image/png");
+        return ref;
+    }
+
+    private SecretRoom saveImageRoom(String imageRef) {
+        return roomRepository.save(SecretRoom.builder()
+                .ownerId(1L)
+                .ownerName("owner")
+                .title("title")
+                .hint("hint")
+                .answerHash("hash")
+                .contentType(SecretRoom.ContentType.IMAGE)
+                .imageRef(imageRef)
+                .visibility(SecretRoom.Visibility.PUBLIC)
+                .policy(SecretRoom.Policy.UNLIMITED)
+                .build());
+    }
+
+    private Map<String, Object> imageMeta(SecretRoom room) {
+        return roomRepository.findById(room.getId()).orElseThrow().getImageMeta();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> variants(Map<String, Object> meta) {
+        return (List<Map<String, Object>>) meta.get("variants");
+    }
+
+    private static List<Integer> variantWidths(Map<String, Object> meta) {
+        return variants(meta).stream()
+                .map(variant -> ((Number) variant.get("width")).intValue())
+                .collect(Collectors.toList());
+    }
+
+    private BufferedImage readImage(String ref) throws IOException {
+        try (InputStream in = blobStore.openRead(ref)) {
+            return ImageIO.read(in);
+        }
+    }
+}
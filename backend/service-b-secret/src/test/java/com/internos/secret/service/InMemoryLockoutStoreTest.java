@@ -0,0 +1,9 @@
+package com.internos.secret.service;
+
+class InMemoryLockoutStoreTest extends LockoutStoreContractTest {
+
+    @Override
+    protected LockoutStore store() {
+        return new InMemoryLockoutStore(WINDOW_SEC);
+    }
+}
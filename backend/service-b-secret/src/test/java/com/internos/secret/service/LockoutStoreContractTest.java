@@ -0,0 +1,101 @@
+package com.internos.secret.service;
+
+import com.internos.secret.Concurrency;
+import com.internos.secret.exception.LockedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+// Shared by every LockoutStore: failures recorded in parallel are each counted exactly once
+abstract class LockoutStoreContractTest {
+
+    protected static final int WINDOW_SEC = 600;
+    protected static final int BUCKET_SEC = 60;
+
+    private static final int THREADS = 16;
+    private static final int FAILURES = 100;
+    private static final int THRESHOLD = 5;
+    private static final int LOCK_TTL_SEC = 600;
+    private static final String IP_HASH = "ip-hash";
+
+    private long roomId = 1L;
+
+    protected abstract LockoutStore store();
+
+    @Test
+    void concurrentFailuresAreEachCountedOnce() throws Exception {
+        LockoutStore store = store();
+
+        List<Long> counts = race(() -> store.recordFailure(roomId, IP_HASH));
+
+        // Every caller sees a distinct running total: no increment is lost or read twice
+        assertThat(counts).containsExactlyInAnyOrderElementsOf(
+                LongStream.rangeClosed(1, FAILURES).boxed().collect(Collectors.toList()));
+        assertThat(store.getFailCount(roomId, IP_HASH)).isEqualTo(FAILURES);
+    }
+
+    @Test
+    void concurrentFailuresTripTheLockExactlyAtThreshold() throws Exception {
+        LockoutStore store = store();
+        LockoutService lockoutService = lockoutService(store);
+
+        List<Boolean> locked = race(() -> {
+            try {
+                lockoutService.recordFailure(roomId, IP_HASH);
+                return false;
+            } catch (LockedException e) {
+                return true;
+            }
+        });
+
+        assertThat(locked.stream().filter(l -> !l).count()).isEqualTo(THRESHOLD - 1);
+        assertThat(store.lockRemainingMillis(roomId, IP_HASH)).isPositive();
+    }
+
+    @Test
+    void lockTripsOnTheFailureThatReachesThreshold() {
+        LockoutStore store = store();
+        LockoutService lockoutService = lockoutService(store);
+
+        for (int i = 1; i < THRESHOLD; i++) {
+            lockoutService.recordFailure(roomId, IP_HASH);
+        }
+        assertThat(store.lockRemainingMillis(roomId, IP_HASH)).isZero();
+
+        assertThatThrownBy(() -> lockoutService.recordFailure(roomId, IP_HASH))
+                .isInstanceOf(LockedException.class);
+        assertThat(store.lockRemainingMillis(roomId, IP_HASH)).isPositive();
+    }
+
+    @Test
+    void clearFailuresResetsTheWindow() {
+        LockoutStore store = store();
+        store.recordFailure(roomId, IP_HASH);
+        store.recordFailure(roomId, IP_HASH);
+
+        store.clearFailures(roomId, IP_HASH);
+
+        assertThat(store.getFailCount(roomId, IP_HASH)).isZero();
+        assertThat(store.recordFailure(roomId, IP_HASH)).isEqualTo(1);
+    }
+
+    // Distinct room per test so stores shared across tests start clean
+    protected void useRoom(long roomId) {
+        this.roomId = roomId;
+    }
+
+    private static LockoutService lockoutService(LockoutStore store) {
+        return new LockoutService(store, mock(LockoutAuditService.class), THRESHOLD, LOCK_TTL_SEC);
+    }
+
+    private static <T> List<T> race(Callable<T> call) throws Exception {
+        return Concurrency.race(THREADS, FAILURES, call);
+    }
+}
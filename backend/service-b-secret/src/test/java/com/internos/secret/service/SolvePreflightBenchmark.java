@@ -0,0 +1,101 @@
+package com.internos.secret.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Solve preflight latency: the single Lua round trip against the separate nonce and lockout reads it replaced.
+// The old path also ran a Postgres lockout query, which is left out here, so the gap shown is a lower bound.
+// Run with ./gradlew benchmark
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class SolvePreflightBenchmark {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 20_000;
+    private static final Long ROOM_ID = 42L;
+    private static final String IP_HASH = "benchmark-ip";
+
+    @Container
+    private static final GenericContainer<?> REDIS =
+            new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+    private static NonceService nonceService;
+    private static RedisLockoutStore lockoutStore;
+    private static SolvePreflightService preflightService;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        nonceService = new NonceService(redisTemplate, 60, "redis", "benchmark-secret");
+        lockoutStore = new RedisLockoutStore(redisTemplate, 600, 60);
+        preflightService = new SolvePreflightService(redisTemplate, nonceService, lockoutStore);
+        // Some failure history, so both paths sum real buckets
+        lockoutStore.recordFailure(ROOM_ID, IP_HASH);
+        lockoutStore.recordFailure(ROOM_ID, IP_HASH);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void preflightScriptVersusSeparateCommands() {
+        long[] separate = measure(nonce -> {
+            String roomId = redisTemplate.opsForValue().getAndDelete(nonceService.nonceKey(nonce, ROOM_ID));
+            lockoutStore.lockRemainingMillis(ROOM_ID, IP_HASH);
+            lockoutStore.getFailCount(ROOM_ID, IP_HASH);
+            return ROOM_ID.toString().equals(roomId);
+        });
+        long[] script = measure(nonce -> preflightService.run(nonce, ROOM_ID, IP_HASH).isNonceValid());
+
+        report("separate commands (3 round trips)", separate);
+        report("preflight script (1 round trip)", script);
+        assertThat(percentile(script, 50)).isPositive();
+    }
+
+    // Nonces are issued outside the timed section; every timed call must see a valid nonce
+    private static long[] measure(Predicate<String> path) {
+        for (int i = 0; i < WARMUP; i++) {
+            assertThat(path.test(nonceService.generateNonce(ROOM_ID))).isTrue();
+        }
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            String nonce = nonceService.generateNonce(ROOM_ID);
+            long started = System.nanoTime();
+            boolean valid = path.test(nonce);
+            nanos[i] = System.nanoTime() - started;
+            assertThat(valid).isTrue();
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String name, long[] sortedNanos) {
+        System.out.printf("%-36s p50=%6.1f us  p90=%6.1f us  p99=%6.1f us  mean=%6.1f us%n", name,
+                percentile(sortedNanos, 50) / 1000.0, percentile(sortedNanos, 90) / 1000.0,
+                percentile(sortedNanos, 99) / 1000.0, Arrays.stream(sortedNanos).average().orElse(0) / 1000.0);
+    }
+
+    private static long percentile(long[] sortedNanos, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)];
+    }
+}
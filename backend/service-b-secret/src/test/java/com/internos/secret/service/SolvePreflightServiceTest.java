@@ -0,0 +1,63 @@
+package com.internos.secret.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Nonces are single use per room, whichever address presents them
+@Testcontainers(disabledWithoutDocker = true)
+class SolvePreflightServiceTest {
+
+    private static final Long ROOM_ID = 7L;
+
+    @Container
+    private static final GenericContainer<?> REDIS =
+            new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void signedNonceCannotBeReplayedFromAnotherIp() {
+        NonceService nonceService = new NonceService(redisTemplate, 60, "signed", "test-secret");
+        SolvePreflightService preflight = preflight(nonceService);
+        String nonce = nonceService.generateNonce(ROOM_ID);
+
+        assertThat(preflight.run(nonce, ROOM_ID, "ip-a").isNonceValid()).isTrue();
+        assertThat(preflight.run(nonce, ROOM_ID, "ip-b").isNonceValid()).isFalse();
+    }
+
+    @Test
+    void storedNonceCanBeRedeemedAfterTheClientIpChanges() {
+        NonceService nonceService = new NonceService(redisTemplate, 60, "redis", "test-secret");
+        SolvePreflightService preflight = preflight(nonceService);
+        String nonce = nonceService.generateNonce(ROOM_ID);
+
+        assertThat(preflight.run(nonce, ROOM_ID, "ip-b").isNonceValid()).isTrue();
+        assertThat(preflight.run(nonce, ROOM_ID, "ip-a").isNonceValid()).isFalse();
+    }
+
+    private static SolvePreflightService preflight(NonceService nonceService) {
+        return new SolvePreflightService(redisTemplate, nonceService, new RedisLockoutStore(redisTemplate, 600, 60));
+    }
+}
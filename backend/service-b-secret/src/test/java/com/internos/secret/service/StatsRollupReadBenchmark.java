@@ -0,0 +1,85 @@
+package com.internos.secret.service;
+
+import com.internos.secret.IntegrationTestSupport;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Window reads through attempt_stats_minute_live as attempt history grows: the counter resync should cost the same
+// over 1 day and 30 days of history, since rolled-up minutes outside the window are never touched.
+// Run with ./gradlew benchmark
+@Tag("benchmark")
+class StatsRollupReadBenchmark extends IntegrationTestSupport {
+
+    private static final int ROOMS = 200;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 200;
+
+    // One attempt per room every ten minutes, the newest just now
+    private static final String HISTORY_SQL =
+            "INSERT INTO attempt (room_id, is_correct, latency_ms, ip_hash, created_at) " +
+            "SELECT r, random() < 0.2, 100, 'benchmark', NOW() - m * INTERVAL '10 minutes' " +
+            "FROM generate_series(1, ?) r, generate_series(0, ? * 144) m";
+    // Everything older than the last few minutes is rolled up, as the rollup job would leave it
+    private static final String ROLLUP_SQL =
+            "INSERT INTO attempt_stats_minute (room_id, bucket, attempts, correct, latency_sum) " +
+            "SELECT room_id, date_trunc('minute', created_at), COUNT(*), COUNT(*) FILTER (WHERE is_correct), " +
+            "COALESCE(SUM(latency_ms), 0) FROM attempt WHERE created_at < date_trunc('minute', NOW()) - INTERVAL '2 minutes' " +
+            "GROUP BY room_id, date_trunc('minute', created_at)";
+    private static final String WATERMARK_SQL =
+            "UPDATE stats_rollup_state SET watermark = date_trunc('minute', NOW()) - INTERVAL '2 minutes' " +
+            "WHERE name = 'attempt_minute'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RoomActivityCounters roomActivityCounters;
+
+    @Test
+    void resyncLatencyIndependentOfHistory() {
+        long[] oneDay = measureWithHistory(1);
+        long[] thirtyDays = measureWithHistory(30);
+
+        report("resync, 1 day of history", oneDay);
+        report("resync, 30 days of history", thirtyDays);
+        assertThat(percentile(thirtyDays, 50)).isPositive();
+    }
+
+    private long[] measureWithHistory(int days) {
+        jdbcTemplate.execute("TRUNCATE attempt, attempt_stats_minute");
+        jdbcTemplate.update(HISTORY_SQL, ROOMS, days);
+        jdbcTemplate.update(ROLLUP_SQL);
+        jdbcTemplate.update(WATERMARK_SQL);
+        jdbcTemplate.execute("ANALYZE attempt");
+        jdbcTemplate.execute("ANALYZE attempt_stats_minute");
+
+        for (int i = 0; i < WARMUP; i++) {
+            roomActivityCounters.resync();
+        }
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long started = System.nanoTime();
+            roomActivityCounters.resync();
+            nanos[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String name, long[] sortedNanos) {
+        System.out.printf("%-30s p50=%7.2f ms  p90=%7.2f ms  p99=%7.2f ms%n", name,
+                percentile(sortedNanos, 50) / 1e6, percentile(sortedNanos, 90) / 1e6,
+                percentile(sortedNanos, 99) / 1e6);
+    }
+
+    private static long percentile(long[] sortedNanos, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)];
+    }
+}
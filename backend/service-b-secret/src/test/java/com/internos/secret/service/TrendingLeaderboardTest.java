@@ -0,0 +1,158 @@
+package com.internos.secret.service;
+
+import com.internos.secret.entity.SecretRoom;
+import com.internos.secret.repository.AttemptRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Testcontainers(disabledWithoutDocker = true)
+class TrendingLeaderboardTest {
+
+    private static final String BOARD_KEY = "trending:hot";
+    private static final int HALF_LIFE_SEC = 3600;
+    private static final double CORRECT_WEIGHT = 1.0;
+    private static final double ATTEMPT_WEIGHT = 0.2;
+    private static final double MIN_SCORE = 0.1;
+    private static final double EPSILON = 1e-9;
+
+    @Container
+    private static final GenericContainer<?> REDIS =
+            new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-10T00:00:00Z"));
+    private TrendingLeaderboard leaderboard;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.delete(BOARD_KEY);
+        RoomCache roomCache = mock(RoomCache.class);
+        when(roomCache.getAll(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().collect(Collectors.toMap(Function.identity(), TrendingLeaderboardTest::room));
+        });
+        leaderboard = new TrendingLeaderboard(redisTemplate, mock(AttemptRepository.class), roomCache,
+                new HotnessScorer(clock, HALF_LIFE_SEC), clock,
+                HALF_LIFE_SEC, CORRECT_WEIGHT, ATTEMPT_WEIGHT, MIN_SCORE, 21600);
+    }
+
+    @Test
+    void attemptsAccumulateAndDecay() {
+        leaderboard.recordAttempt(room(1L), true);
+        leaderboard.recordAttempt(room(1L), false);
+        assertThat(scoreOf(1L)).isCloseTo(CORRECT_WEIGHT + ATTEMPT_WEIGHT, within(EPSILON));
+
+        clock.advance(Duration.ofSeconds(HALF_LIFE_SEC));
+        assertThat(scoreOf(1L)).isCloseTo((CORRECT_WEIGHT + ATTEMPT_WEIGHT) / 2, within(EPSILON));
+
+        // A fresh event lands on top of the decayed total without rescoring anything stored
+        leaderboard.recordAttempt(room(1L), true);
+        assertThat(scoreOf(1L)).isCloseTo((CORRECT_WEIGHT + ATTEMPT_WEIGHT) / 2 + CORRECT_WEIGHT, within(EPSILON));
+    }
+
+    @Test
+    void recentActivityOutranksOlderBursts() {
+        for (int i = 0; i < 3; i++) {
+            leaderboard.recordAttempt(room(1L), true);
+        }
+        clock.advance(Duration.ofSeconds(2L * HALF_LIFE_SEC));
+        leaderboard.recordAttempt(room(2L), true);
+        leaderboard.recordAttempt(room(2L), true);
+
+        // Room 1 decayed from 3.0 to 0.75, room 2 sits at 2.0
+        assertThat(leaderboard.top(0, 10)).extracting(entry -> entry.getRoom().getId()).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void pruneDropsRoomsOnlyOnceTheyCoolBelowMinScore() {
+        leaderboard.recordAttempt(room(1L), false);
+        leaderboard.recordAttempt(room(2L), true);
+
+        // 0.2 needs just over one half-life to fall below 0.1; 1.0 needs over three
+        clock.advance(Duration.ofSeconds(HALF_LIFE_SEC - 1));
+        leaderboard.prune();
+        assertThat(members()).containsExactlyInAnyOrder("1", "2");
+
+        clock.advance(Duration.ofSeconds(2));
+        leaderboard.prune();
+        assertThat(members()).containsExactly("2");
+
+        clock.advance(Duration.ofSeconds(2L * HALF_LIFE_SEC));
+        leaderboard.prune();
+        assertThat(members()).containsExactly("2");
+
+        clock.advance(Duration.ofSeconds(HALF_LIFE_SEC));
+        leaderboard.prune();
+        assertThat(members()).isEmpty();
+    }
+
+    @Test
+    void privateRoomsAreNeverRanked() {
+        RoomSnapshot privateRoom = RoomSnapshot.builder()
+                .id(3L)
+                .visibility(SecretRoom.Visibility.PRIVATE)
+                .isActive(true)
+                .build();
+
+        leaderboard.recordAttempt(privateRoom, true);
+
+        assertThat(members()).isEmpty();
+    }
+
+    private double scoreOf(long roomId) {
+        List<TrendingLeaderboard.Entry> top = leaderboard.top(0, 10);
+        return top.stream()
+                .filter(entry -> entry.getRoom().getId() == roomId)
+                .findFirst()
+                .orElseThrow()
+                .getScore();
+    }
+
+    private static Set<String> members() {
+        return redisTemplate.opsForZSet().range(BOARD_KEY, 0, -1);
+    }
+
+    private static RoomSnapshot room(Long id) {
+        return RoomSnapshot.builder()
+                .id(id)
+                .visibility(SecretRoom.Visibility.PUBLIC)
+                .isActive(true)
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+package com.internos.secret.service;
+
+import com.internos.secret.Concurrency;
+import com.internos.secret.IntegrationTestSupport;
+import com.internos.secret.entity.SecretRoom;
+import com.internos.secret.exception.ServiceUnavailableException;
+import com.internos.secret.repository.SecretRoomRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ViewBudgetConcurrencyTest extends IntegrationTestSupport {
+
+    private static final int THREADS = 32;
+    private static final int CALLS = 200;
+    private static final int VIEW_LIMIT = 7;
+
+    @Autowired
+    private SecretRoomRepository roomRepository;
+
+    @Autowired
+    private ViewBudgetService viewBudgetService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // A Redis that has been serving all along: the epoch is in place and no loss is being settled
+    @BeforeEach
+    void warmRedis() {
+        stringRedisTemplate.opsForValue().setIfAbsent("room:views-epoch", "test");
+        stringRedisTemplate.delete("room:views-settle");
+    }
+
+    @Test
+    void consumeViewGrantsExactlyViewLimit() throws Exception {
+        SecretRoom room = saveRoom(SecretRoom.Policy.LIMITED, VIEW_LIMIT);
+
+        int granted = countSuccesses(() -> roomRepository.consumeView(room.getId()).isPresent());
+
+        assertThat(granted).isEqualTo(VIEW_LIMIT);
+        SecretRoom stored = roomRepository.findById(room.getId()).orElseThrow();
+        assertThat(stored.getViewsUsed()).isEqualTo(VIEW_LIMIT);
+        assertThat(stored.getIsActive()).isFalse();
+    }
+
+    @Test
+    void consumeViewGrantsOnceRoomOnce() throws Exception {
+        SecretRoom room = saveRoom(SecretRoom.Policy.ONCE, null);
+
+        int granted = countSuccesses(() -> roomRepository.consumeView(room.getId()).isPresent());
+
+        assertThat(granted).isEqualTo(1);
+    }
+
+    @Test
+    void viewBudgetGrantsExactlyViewLimit() throws Exception {
+        SecretRoom room = saveRoom(SecretRoom.Policy.LIMITED, VIEW_LIMIT);
+        RoomSnapshot snapshot = RoomSnapshot.from(room);
+
+        int granted = countSuccesses(() -> viewBudgetService.consume(snapshot).isPresent());
+
+        assertThat(granted).isEqualTo(VIEW_LIMIT);
+        // The write-behind lands the same count in Postgres and closes the room
+        viewBudgetService.flush();
+        SecretRoom stored = roomRepository.findById(room.getId()).orElseThrow();
+        assertThat(stored.getViewsUsed()).isEqualTo(VIEW_LIMIT);
+        assertThat(stored.getIsActive()).isFalse();
+    }
+
+    @Test
+    void primedRoomStartsWithAZeroCounter() {
+        SecretRoom room = saveRoom(SecretRoom.Policy.ONCE, null);
+
+        viewBudgetService.prime(room);
+
+        assertThat(stringRedisTemplate.opsForValue().get("room:views:" + room.getId())).isEqualTo("0");
+    }
+
+    @Test
+    void viewBudgetKeepsCountingAfterTheKeyExpires() throws Exception {
+        SecretRoom room = saveRoom(SecretRoom.Policy.LIMITED, VIEW_LIMIT);
+        RoomSnapshot snapshot = RoomSnapshot.from(room);
+        for (int i = 0; i < 3; i++) {
+            viewBudgetService.consume(snapshot);
+        }
+
+        // Seeded again at once, and counts still pending on this node must not be lost
+        stringRedisTemplate.delete("room:views:" + room.getId());
+        int granted = countSuccesses(() -> viewBudgetService.consume(snapshot).isPresent());
+
+        assertThat(granted).isEqualTo(VIEW_LIMIT - 3);
+        viewBudgetService.flush();
+        assertThat(roomRepository.findById(room.getId()).orElseThrow().getViewsUsed()).isEqualTo(VIEW_LIMIT);
+    }
+
+    @Test
+    void viewBudgetHoldsSeedingAfterRedisDataLoss() throws Exception {
+        SecretRoom room = saveRoom(SecretRoom.Policy.LIMITED, VIEW_LIMIT);
+        RoomSnapshot snapshot = RoomSnapshot.from(room);
+        viewBudgetService.consume(snapshot);
+        viewBudgetService.consume(snapshot);
+
+        stringRedisTemplate.delete(List.of("room:views:" + room.getId(), "room:views-epoch"));
+
+        assertThatThrownBy(() -> viewBudgetService.consume(snapshot)).isInstanceOf(ServiceUnavailableException.class);
+        Long settleMs = stringRedisTemplate.getExpire("room:views-settle", TimeUnit.MILLISECONDS);
+        Thread.sleep(Math.max(0, settleMs != null ? settleMs : 0) + 50);
+        assertThat(viewBudgetService.consume(snapshot)).contains(3);
+    }
+
+    private SecretRoom saveRoom(SecretRoom.Policy policy, Integer viewLimit) {
+        return roomRepository.save(SecretRoom.builder()
+                .ownerId(1L)
+                .ownerName("owner")
+                .title("title")
+                .hint("hint")
+                .answerHash("hash")
+                .contentType(SecretRoom.ContentType.TEXT)
+                .contentText("secret")
+                .visibility(SecretRoom.Visibility.PUBLIC)
+                .policy(policy)
+                .viewLimit(viewLimit)
+                .build());
+    }
+
+    private static int countSuccesses(Callable<Boolean> call) throws Exception {
+        return Concurrency.countSuccesses(THREADS, CALLS, call);
+    }
+}